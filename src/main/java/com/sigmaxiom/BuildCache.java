@@ -0,0 +1,146 @@
+package com.sigmaxiom;
+
+import java.io.File;
+import java.util.prefs.Preferences;
+
+public class BuildCache {
+
+    public static final String PREF_BUILD_CACHE_MAX_MB = "build_cache_max_mb";
+    private static final long DEFAULT_MAX_MB = 2048;
+
+    private BuildCache() {
+    }
+
+    public static File getCacheDirectory() {
+        return new File(System.getProperty("user.home"), ".sigmaxiom" + File.separator + "build-cache");
+    }
+
+    public static long getMaxBytes() {
+        Preferences prefs = Preferences.userNodeForPackage(JupyterNotebookIDE.class);
+        return Math.max(0, prefs.getLong(PREF_BUILD_CACHE_MAX_MB, DEFAULT_MAX_MB)) * 1024L * 1024L;
+    }
+
+
+    public static String pythonHelpers() {
+        StringBuilder helpers = new StringBuilder();
+        helpers.append("import re\n");
+        helpers.append("import shutil\n");
+        helpers.append("import sys\n\n");
+        helpers.append("# Content-addressed build cache shared by all compiled cells\n");
+        helpers.append("class _sigmaxiom_build:\n");
+        helpers.append("    DIR = r'").append(getCacheDirectory().getAbsolutePath().replace("\\", "\\\\")).append("'\n");
+        helpers.append("    MAX_BYTES = ").append(getMaxBytes()).append("\n");
+        helpers.append("    C_INCLUDE = re.compile(r'^\\s*#\\s*include\\s*\"([^\"]+)\"', re.MULTILINE)\n");
+        helpers.append("    FUTHARK_IMPORT = re.compile(r'\\bimport\\s+\"([^\"]+)\"')\n");
+        helpers.append("    versions = getattr(globals().get('_sigmaxiom_build'), 'versions', {})\n\n");
+        helpers.append("    @staticmethod\n");
+        helpers.append("    def dependencies(path, pattern, suffix=''):\n");
+        helpers.append("        found = []\n");
+        helpers.append("        pending = [os.path.abspath(path)]\n");
+        helpers.append("        seen = set(pending)\n");
+        helpers.append("        while pending:\n");
+        helpers.append("            current = pending.pop()\n");
+        helpers.append("            try:\n");
+        helpers.append("                with open(current, errors='replace') as source:\n");
+        helpers.append("                    text = source.read()\n");
+        helpers.append("            except OSError:\n");
+        helpers.append("                continue\n");
+        helpers.append("            for name in pattern.findall(text):\n");
+        helpers.append("                if suffix and not name.endswith(suffix):\n");
+        helpers.append("                    name += suffix\n");
+        helpers.append("                dependency = os.path.abspath(os.path.join(os.path.dirname(current), name))\n");
+        helpers.append("                if dependency in seen:\n");
+        helpers.append("                    continue\n");
+        helpers.append("                seen.add(dependency)\n");
+        helpers.append("                try:\n");
+        helpers.append("                    with open(dependency, errors='replace') as source:\n");
+        helpers.append("                        found.append(dependency + '\\0' + source.read())\n");
+        helpers.append("                    pending.append(dependency)\n");
+        helpers.append("                except OSError:\n");
+        helpers.append("                    found.append(dependency + '\\0missing')\n");
+        helpers.append("        return sorted(found)\n\n");
+        helpers.append("    @staticmethod\n");
+        helpers.append("    def key(language, flags, version_cmd, *sources):\n");
+        helpers.append("        tool = tuple(version_cmd)\n");
+        helpers.append("        if tool not in _sigmaxiom_build.versions:\n");
+        helpers.append("            try:\n");
+        helpers.append("                probe = subprocess.run(list(version_cmd), capture_output=True, text=True)\n");
+        helpers.append("                _sigmaxiom_build.versions[tool] = probe.stdout + probe.stderr\n");
+        helpers.append("            except Exception:\n");
+        helpers.append("                _sigmaxiom_build.versions[tool] = ''\n");
+        helpers.append("        digest = hashlib.sha256()\n");
+        helpers.append("        for part in (language, ' '.join(flags), _sigmaxiom_build.versions[tool], sys.version) + sources:\n");
+        helpers.append("            digest.update(part.encode())\n");
+        helpers.append("            digest.update(b'\\0')\n");
+        helpers.append("        return digest.hexdigest()\n\n");
+        helpers.append("    @staticmethod\n");
+        helpers.append("    def fetch(key, work_dir):\n");
+        helpers.append("        entry = os.path.join(_sigmaxiom_build.DIR, key)\n");
+        helpers.append("        if not os.path.isdir(entry):\n");
+        helpers.append("            return False\n");
+        helpers.append("        try:\n");
+        helpers.append("            names = os.listdir(entry)\n");
+        helpers.append("            if not names:\n");
+        helpers.append("                shutil.rmtree(entry, ignore_errors=True)\n");
+        helpers.append("                return False\n");
+        helpers.append("            for name in names:\n");
+        helpers.append("                shutil.copy2(os.path.join(entry, name), os.path.join(work_dir, name))\n");
+        helpers.append("            os.utime(entry, None)\n");
+        helpers.append("        except OSError as e:\n");
+        helpers.append("            print(f\"Build cache entry unusable, rebuilding: {e}\")\n");
+        helpers.append("            return False\n");
+        helpers.append("        print(f\"Build cache hit ({key[:12]}), reusing the previous build\")\n");
+        helpers.append("        return True\n\n");
+        helpers.append("    @staticmethod\n");
+        helpers.append("    def store(key, work_dir, names):\n");
+        helpers.append("        entry = os.path.join(_sigmaxiom_build.DIR, key)\n");
+        helpers.append("        staging = f'{entry}.{os.getpid()}.tmp'\n");
+        helpers.append("        try:\n");
+        helpers.append("            os.makedirs(staging, exist_ok=True)\n");
+        helpers.append("            copied = 0\n");
+        helpers.append("            for name in names:\n");
+        helpers.append("                path = os.path.join(work_dir, name)\n");
+        helpers.append("                if os.path.isfile(path):\n");
+        helpers.append("                    shutil.copy2(path, os.path.join(staging, name))\n");
+        helpers.append("                    copied += 1\n");
+        helpers.append("            if copied == 0 or os.path.isdir(entry):\n");
+        helpers.append("                shutil.rmtree(staging, ignore_errors=True)\n");
+        helpers.append("            else:\n");
+        helpers.append("                os.replace(staging, entry)\n");
+        helpers.append("            _sigmaxiom_build.evict()\n");
+        helpers.append("        except OSError as e:\n");
+        helpers.append("            shutil.rmtree(staging, ignore_errors=True)\n");
+        helpers.append("            print(f\"Could not store build in cache: {e}\")\n\n");
+        helpers.append("    @staticmethod\n");
+        helpers.append("    def evict():\n");
+        helpers.append("        entries = []\n");
+        helpers.append("        total = 0\n");
+        helpers.append("        for key in os.listdir(_sigmaxiom_build.DIR):\n");
+        helpers.append("            entry = os.path.join(_sigmaxiom_build.DIR, key)\n");
+        helpers.append("            if key.endswith('.tmp') or not os.path.isdir(entry):\n");
+        helpers.append("                continue\n");
+        helpers.append("            size = sum(os.path.getsize(os.path.join(entry, name)) for name in os.listdir(entry))\n");
+        helpers.append("            entries.append((os.path.getmtime(entry), size, entry))\n");
+        helpers.append("            total += size\n");
+        helpers.append("        entries.sort()\n");
+        helpers.append("        for _, size, entry in entries:\n");
+        helpers.append("            if total <= _sigmaxiom_build.MAX_BYTES:\n");
+        helpers.append("                break\n");
+        helpers.append("            shutil.rmtree(entry, ignore_errors=True)\n");
+        helpers.append("            total -= size\n\n");
+        helpers.append("    @staticmethod\n");
+        helpers.append("    def artifacts(work_dir, *prefixes):\n");
+        helpers.append("        return [name for name in os.listdir(work_dir)\n");
+        helpers.append("                if name.startswith(prefixes) and not name.endswith(('.fut', '.nim', '.cpp', '.cu', '.java'))]\n\n");
+        helpers.append("    @staticmethod\n");
+        helpers.append("    def run(key, work_dir, compile_cmd, artifacts, **kwargs):\n");
+        helpers.append("        if _sigmaxiom_build.fetch(key, work_dir):\n");
+        helpers.append("            return subprocess.CompletedProcess(compile_cmd, 0, '', '')\n");
+        helpers.append("        process = subprocess.run(compile_cmd, capture_output=True, text=True, **kwargs)\n");
+        helpers.append("        if process.returncode == 0:\n");
+        helpers.append("            _sigmaxiom_build.store(key, work_dir, artifacts() if callable(artifacts) else artifacts)\n");
+        helpers.append("        return process\n\n");
+        helpers.append("os.makedirs(_sigmaxiom_build.DIR, exist_ok=True)\n\n");
+        return helpers.toString();
+    }
+}
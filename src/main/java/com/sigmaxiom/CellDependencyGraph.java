@@ -0,0 +1,166 @@
+package com.sigmaxiom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class CellDependencyGraph {
+
+    private static final Set<String> COMPILED_LANGUAGES = new HashSet<>(Arrays.asList(
+        "C++", "CUDA", "Nim", "Futhark C", "Futhark Multicore", "Futhark CUDA", "Futhark OpenCL"));
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    private static final Pattern PYTHON_DEFINITION = Pattern.compile(
+        "^\\s*(?:async\\s+)?(?:def|class)\\s+([A-Za-z_]\\w*)", Pattern.MULTILINE);
+    private static final Pattern PYTHON_ASSIGNMENT = Pattern.compile(
+        "^[ \\t]*([A-Za-z_][\\w \\t,]*?)[ \\t]*(?:[-+*/%&|^@]|//|\\*\\*|<<|>>)?=(?!=)", Pattern.MULTILINE);
+    private static final Pattern PYTHON_IMPORT = Pattern.compile(
+        "^\\s*(?:from\\s+\\S+\\s+)?import\\s+([^#\\n]+)", Pattern.MULTILINE);
+
+    private static class Node {
+        private final boolean compiled;
+        private final String artifactKey;
+        private final Set<String> providedNames;
+        private final Set<String> definedNames;
+        private final Set<String> usedNames;
+        private final List<Integer> buildDependencies = new ArrayList<>();
+        private final List<Integer> dependencies = new ArrayList<>();
+
+        Node(boolean compiled, String artifactKey, Set<String> providedNames,
+             Set<String> definedNames, Set<String> usedNames) {
+            this.compiled = compiled;
+            this.artifactKey = artifactKey;
+            this.providedNames = providedNames;
+            this.definedNames = definedNames;
+            this.usedNames = usedNames;
+        }
+
+        boolean touches(Set<String> names) {
+            if (names == null) {
+                return true;
+            }
+            for (String name : names) {
+                if (definedNames.contains(name) || usedNames.contains(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    public static boolean isCompiledLanguage(String language) {
+        return language != null && COMPILED_LANGUAGES.contains(language);
+    }
+
+
+    public int addCell(String language, String outputName, String code) {
+        if (code == null) {
+            code = "";
+        }
+        boolean compiled = isCompiledLanguage(language);
+        Node node;
+        if (compiled) {
+            String moduleName = stripExtension(outputName);
+            Set<String> provided = null;
+            if (moduleName != null) {
+                provided = new HashSet<>();
+                provided.add(moduleName);
+                if ("Nim".equals(language)) {
+                    provided.add("nim_module");
+                }
+            }
+            String artifactKey = moduleName != null ? moduleName : language + "\u0000" + code;
+            node = new Node(true, artifactKey, provided, Collections.<String>emptySet(), Collections.<String>emptySet());
+        } else {
+            Set<String> defined = "Python".equals(language) ? pythonDefinitions(code) : Collections.<String>emptySet();
+            node = new Node(false, null, null, defined, identifiers(code));
+        }
+
+        int index = nodes.size();
+        for (int i = 0; i < index; i++) {
+            Node earlier = nodes.get(i);
+            if (node.compiled && earlier.compiled) {
+                if (earlier.artifactKey.equals(node.artifactKey)) {
+                    node.buildDependencies.add(i);
+                }
+            } else if (node.compiled) {
+                if (earlier.touches(node.providedNames)) {
+                    node.dependencies.add(i);
+                }
+            } else if (earlier.compiled) {
+                if (language != null && node.touches(earlier.providedNames)) {
+                    node.dependencies.add(i);
+                }
+            }
+        }
+        nodes.add(node);
+        return index;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public boolean isCompiled(int index) {
+        return nodes.get(index).compiled;
+    }
+
+    public List<Integer> getBuildDependencies(int index) {
+        return Collections.unmodifiableList(nodes.get(index).buildDependencies);
+    }
+
+    public List<Integer> getDependencies(int index) {
+        return Collections.unmodifiableList(nodes.get(index).dependencies);
+    }
+
+
+    private static String stripExtension(String outputName) {
+        if (outputName == null || outputName.trim().isEmpty()) {
+            return null;
+        }
+        String name = outputName.trim();
+        if (name.contains(".")) {
+            name = name.substring(0, name.lastIndexOf('.'));
+        }
+        return name;
+    }
+
+    private static Set<String> identifiers(String code) {
+        Set<String> names = new HashSet<>();
+        Matcher matcher = IDENTIFIER.matcher(code);
+        while (matcher.find()) {
+            names.add(matcher.group());
+        }
+        return names;
+    }
+
+    private static Set<String> pythonDefinitions(String code) {
+        Set<String> names = new HashSet<>();
+        Matcher matcher = PYTHON_DEFINITION.matcher(code);
+        while (matcher.find()) {
+            names.add(matcher.group(1));
+        }
+        matcher = PYTHON_ASSIGNMENT.matcher(code);
+        while (matcher.find()) {
+            names.addAll(identifiers(matcher.group(1)));
+        }
+        matcher = PYTHON_IMPORT.matcher(code);
+        while (matcher.find()) {
+            for (String part : matcher.group(1).split(",")) {
+                String[] words = part.replace("(", " ").replace(")", " ").trim().split("\\s+");
+                String name = words[words.length - 1];
+                if (!name.isEmpty() && !"*".equals(name)) {
+                    names.add(name.contains(".") ? name.substring(0, name.indexOf('.')) : name);
+                }
+            }
+        }
+        return names;
+    }
+}
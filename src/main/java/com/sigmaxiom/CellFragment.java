@@ -0,0 +1,79 @@
+package com.sigmaxiom;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
+
+public class CellFragment {
+
+    private final String cellId;
+    private final int version;
+    private final String json;
+    private final OutputSidecar sidecar;
+    private final Set<String> storedNames;
+    private final boolean partial;
+
+    private CellFragment(String cellId, int version, String json, OutputSidecar sidecar, Set<String> storedNames, boolean partial) {
+        this.cellId = cellId;
+        this.version = version;
+        this.json = json;
+        this.sidecar = sidecar;
+        this.storedNames = storedNames;
+        this.partial = partial;
+    }
+
+    public static CellFragment encode(JSONObject cell, int version, OutputSidecar sidecar) {
+        return encode(cell, version, sidecar, false);
+    }
+
+    public static CellFragment encode(JSONObject cell, int version, OutputSidecar sidecar, boolean partial) {
+        try {
+            return new CellFragment(cell.optString("id", ""), version, NotebookCodec.encode(cell), sidecar,
+                                    OutputSidecar.storedNames(cell), partial);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    public String getCellId() {
+        return cellId;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    public OutputSidecar getSidecar() {
+        return sidecar;
+    }
+
+    public Set<String> getStoredNames() {
+        return storedNames;
+    }
+
+    public boolean isPartial() {
+        return partial;
+    }
+
+    public String toSingleLine() {
+        StringBuilder line = new StringBuilder(json.length());
+        for (int i = 0; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == '\n') {
+                while (i + 1 < json.length() && json.charAt(i + 1) == ' ') {
+                    i++;
+                }
+            } else {
+                line.append(c);
+            }
+        }
+        return line.toString();
+    }
+}
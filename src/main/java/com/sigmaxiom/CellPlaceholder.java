@@ -0,0 +1,143 @@
+package com.sigmaxiom;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.swing.JComponent;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+public class CellPlaceholder extends JComponent {
+
+    private static final Font SOURCE_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 18);
+    private static final Color BACKGROUND = new Color(26, 26, 46);
+    private static final Color SOURCE_COLOR = new Color(0x8A8AA8);
+    private static final int MAX_PREVIEW_LINES = 200;
+    private static final int PADDING = 40;
+
+    private JSONObject cellJson;
+    private CellFragment fragment;
+    private final String cellId;
+    private final String cellType;
+    private final String[] lines;
+    private final int lineCount;
+    private int estimatedHeight;
+    private boolean journaled = true;
+
+    public CellPlaceholder(JSONObject cellJson) {
+        this.cellJson = cellJson;
+        this.cellId = cellJson.optString("id", "");
+        this.cellType = cellJson.optString("cell_type", "");
+        String source = sourceText(cellJson);
+        String[] preview = source.isEmpty() ? new String[0] : source.split("\n", MAX_PREVIEW_LINES + 1);
+        this.lines = preview.length > MAX_PREVIEW_LINES ? Arrays.copyOf(preview, MAX_PREVIEW_LINES) : preview;
+        int count = source.isEmpty() ? 0 : 1;
+        for (int i = source.indexOf('\n'); i >= 0 && i < source.length() - 1; i = source.indexOf('\n', i + 1)) {
+            count++;
+        }
+        this.lineCount = count;
+        setOpaque(true);
+        setFont(SOURCE_FONT);
+        setBackground(BACKGROUND);
+        setForeground(SOURCE_COLOR);
+    }
+
+    public static String sourceText(JSONObject cellJson) {
+        return NotebookCodec.joinMultiline(cellJson.opt("source"));
+    }
+
+    public synchronized JSONObject getCellJson() {
+        if (cellJson == null) {
+            cellJson = new JSONObject(fragment.getJson());
+        }
+        return cellJson;
+    }
+
+    public synchronized CellFragment getFragment(OutputSidecar sidecar) {
+        if (fragment == null) {
+            fragment = CellFragment.encode(cellJson, 0, sidecar);
+            cellJson = null;
+        }
+        return fragment;
+    }
+
+    public synchronized boolean clearOutputs() {
+        JSONObject json = getCellJson();
+        JSONArray outputs = json.optJSONArray("outputs");
+        if (!"code".equals(cellType) || ((outputs == null || outputs.length() == 0) && json.isNull("execution_count"))) {
+            return false;
+        }
+        json.put("outputs", new JSONArray());
+        json.put("execution_count", JSONObject.NULL);
+        fragment = null;
+        journaled = false;
+        return true;
+    }
+
+    public synchronized boolean isJournaled() {
+        return journaled;
+    }
+
+    public synchronized void markJournaled() {
+        journaled = true;
+    }
+
+    public String getCellId() {
+        return cellId;
+    }
+
+    public String getCellType() {
+        return cellType;
+    }
+
+    public int getSourceLineCount() {
+        return lineCount;
+    }
+
+    public int getSourceLineHeight() {
+        return getFontMetrics(SOURCE_FONT).getHeight();
+    }
+
+    public void setEstimatedHeight(int height) {
+        if (height != estimatedHeight) {
+            estimatedHeight = height;
+            revalidate();
+        }
+    }
+
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(0, estimatedHeight);
+    }
+
+    @Override
+    public Dimension getMinimumSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        g.setFont(SOURCE_FONT);
+        FontMetrics metrics = g.getFontMetrics();
+        int lineHeight = metrics.getHeight();
+        int first = Math.max(0, (clip.y - PADDING) / lineHeight);
+        int last = Math.min(lines.length - 1, (clip.y + clip.height - PADDING) / lineHeight);
+        g.setColor(getForeground());
+        for (int line = first; line <= last; line++) {
+            g.drawString(lines[line], PADDING, PADDING + line * lineHeight + metrics.getAscent());
+        }
+    }
+}
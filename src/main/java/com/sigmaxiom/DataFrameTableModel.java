@@ -0,0 +1,179 @@
+package com.sigmaxiom;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public class DataFrameTableModel extends AbstractTableModel {
+
+    public static final String TABLE_MIME_TYPE = "application/vnd.sigmaxiom.table+json";
+    public static final int PAGE_SIZE = 500;
+    private static final int MAX_CACHED_PAGES = 16;
+    private static final int RETAINED_PAGE_DISTANCE = 4;
+    private static final String LOADING = "\u2026";
+
+    public interface PageLoader {
+        CompletableFuture<String> load(String token, int offset, int count);
+    }
+
+    private final String token;
+    private final int rowCount;
+    private final String[] columnNames;
+    private final String[] dtypes;
+    private final PageLoader loader;
+    private final int firstPage;
+    private int wantedPage = -1;
+    private int loadingPage = -1;
+    private boolean closed = false;
+    private final Map<Integer, Object[][]> pages = new LinkedHashMap<Integer, Object[][]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+    private volatile boolean sourceMissing = false;
+
+    private DataFrameTableModel(String token, int rowCount, String[] columnNames, String[] dtypes, PageLoader loader,
+                                int firstPage) {
+        this.token = token;
+        this.firstPage = firstPage;
+        this.rowCount = rowCount;
+        this.columnNames = columnNames;
+        this.dtypes = dtypes;
+        this.loader = loader;
+    }
+
+
+    public static DataFrameTableModel fromPayload(String payload, PageLoader loader) {
+        JSONObject json = new JSONObject(payload);
+        JSONArray columns = json.getJSONArray("columns");
+        JSONArray types = json.optJSONArray("dtypes");
+        String[] names = new String[columns.length() + 1];
+        String[] dtypes = new String[columns.length() + 1];
+        names[0] = json.optString("index", "");
+        dtypes[0] = "index";
+        for (int i = 0; i < columns.length(); i++) {
+            names[i + 1] = columns.optString(i);
+            dtypes[i + 1] = types != null ? types.optString(i, "") : "";
+        }
+
+        int offset = json.optInt("offset", 0);
+        DataFrameTableModel model = new DataFrameTableModel(
+            json.getString("token"), json.getInt("rows"), names, dtypes, loader, offset / PAGE_SIZE);
+        model.storePage(offset, json.getJSONArray("data"));
+        return model;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getColumnType(int column) {
+        return dtypes[column];
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int page = row / PAGE_SIZE;
+        Object[][] data = pages.get(page);
+        if (data == null) {
+            requestPage(page);
+            return LOADING;
+        }
+        Object[] values = data[column];
+        int offset = row - page * PAGE_SIZE;
+        return offset < values.length ? values[offset] : "";
+    }
+
+
+    private void requestPage(int page) {
+        if (sourceMissing || loader == null || closed) {
+            return;
+        }
+        wantedPage = page;
+        if (loadingPage >= 0) {
+            return;
+        }
+        loadingPage = page;
+        int offset = page * PAGE_SIZE;
+        loader.load(token, offset, PAGE_SIZE).whenComplete((response, ex) -> {
+            JSONObject json = null;
+            if (ex == null && response != null) {
+                try {
+                    json = new JSONObject(response.substring(Math.max(0, response.indexOf('{'))));
+                } catch (Exception e) {
+                    System.err.println("Malformed table page for rows " + offset + ": " + e.getMessage());
+                }
+            } else if (ex != null) {
+                System.err.println("Error loading table page for rows " + offset + ": " + ex.getMessage());
+            }
+            final JSONObject pageJson = json;
+            SwingUtilities.invokeLater(() -> {
+                loadingPage = -1;
+                if (closed || pageJson == null || !token.equals(pageJson.optString("token"))) {
+                    return;
+                }
+                if (pageJson.optBoolean("missing", false)) {
+                    sourceMissing = true;
+                    return;
+                }
+                if (pageJson.optInt("offset", -1) == offset) {
+                    storePage(offset, pageJson.getJSONArray("data"));
+                    trimPages(wantedPage);
+                    fireTableRowsUpdated(offset, Math.min(rowCount, offset + PAGE_SIZE) - 1);
+                }
+                if (wantedPage != page && !pages.containsKey(wantedPage)) {
+                    requestPage(wantedPage);
+                }
+            });
+        });
+    }
+
+    private void storePage(int offset, JSONArray data) {
+        int columnCount = columnNames.length;
+        Object[][] columns = new Object[columnCount][];
+        for (int c = 0; c < columnCount; c++) {
+            JSONArray values = c < data.length() ? data.getJSONArray(c) : new JSONArray();
+            Object[] column = new Object[values.length()];
+            for (int r = 0; r < column.length; r++) {
+                Object value = values.opt(r);
+                column[r] = value == null || JSONObject.NULL.equals(value) ? "" : value;
+            }
+            columns[c] = column;
+        }
+        pages.put(offset / PAGE_SIZE, columns);
+    }
+
+    private void trimPages(int center) {
+        pages.keySet().removeIf(page -> page != firstPage && Math.abs(page - center) > RETAINED_PAGE_DISTANCE);
+    }
+
+    public void close() {
+        closed = true;
+        pages.keySet().removeIf(page -> page != firstPage);
+    }
+
+    public boolean isSourceMissing() {
+        return sourceMissing;
+    }
+}
@@ -0,0 +1,98 @@
+package com.sigmaxiom;
+
+import javax.swing.Timer;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntSupplier;
+import javax.swing.SwingUtilities;
+
+public class DiagnosticsScheduler<T> {
+
+    public interface CheckRunner<T> {
+        CompletableFuture<?> run(T target);
+    }
+
+    private final int debounceMillis;
+    private final IntSupplier budget;
+    private final CheckRunner<T> runner;
+    private final Map<T, Timer> debounceTimers = new HashMap<>();
+    private final Set<T> ready = new LinkedHashSet<>();
+    private final Set<T> running = new LinkedHashSet<>();
+    private final Set<T> rerun = new LinkedHashSet<>();
+
+    public DiagnosticsScheduler(int debounceMillis, IntSupplier budget, CheckRunner<T> runner) {
+        this.debounceMillis = debounceMillis;
+        this.budget = budget;
+        this.runner = runner;
+    }
+
+
+    public void schedule(T target) {
+        ready.remove(target);
+        Timer timer = debounceTimers.get(target);
+        if (timer == null) {
+            timer = new Timer(debounceMillis, e -> {
+                debounceTimers.remove(target);
+                checkNow(target);
+            });
+            timer.setRepeats(false);
+            debounceTimers.put(target, timer);
+        }
+        timer.restart();
+    }
+
+    public void checkNow(T target) {
+        Timer timer = debounceTimers.remove(target);
+        if (timer != null) {
+            timer.stop();
+        }
+        if (running.contains(target)) {
+            rerun.add(target);
+            return;
+        }
+        ready.add(target);
+        dispatch();
+    }
+
+    public void cancel(T target) {
+        Timer timer = debounceTimers.remove(target);
+        if (timer != null) {
+            timer.stop();
+        }
+        ready.remove(target);
+        rerun.remove(target);
+    }
+
+    private void dispatch() {
+        int limit = Math.max(1, budget.getAsInt());
+        while (running.size() < limit && !ready.isEmpty()) {
+            T target = ready.iterator().next();
+            ready.remove(target);
+            running.add(target);
+
+            CompletableFuture<?> check;
+            try {
+                check = runner.run(target);
+            } catch (Exception e) {
+                System.err.println("Error starting diagnostics check: " + e.getMessage());
+                check = null;
+            }
+            if (check == null) {
+                finished(target);
+            } else {
+                check.whenComplete((result, ex) -> SwingUtilities.invokeLater(() -> finished(target)));
+            }
+        }
+    }
+
+    private void finished(T target) {
+        running.remove(target);
+        if (rerun.remove(target)) {
+            ready.add(target);
+        }
+        dispatch();
+    }
+}
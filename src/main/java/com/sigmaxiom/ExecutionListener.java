@@ -0,0 +1,21 @@
+package com.sigmaxiom;
+
+interface ExecutionListener {
+    void onOutput(String chunk);
+
+    default void onDisplayData(String mimeType, byte[] data) {
+    }
+
+    default void onDisplayData(String mimeType, byte[] data, String displayId, boolean update) {
+        onDisplayData(mimeType, data);
+    }
+
+    default void onClearOutput(boolean wait) {
+    }
+
+    default void onExecutionCount(int executionCount) {
+    }
+
+    default void onExecutionStarted() {
+    }
+}
@@ -0,0 +1,270 @@
+package com.sigmaxiom;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.prefs.Preferences;
+
+public class FigureStore {
+
+    public static final String PREF_FIGURE_CACHE_MB = "figure_cache_mb";
+    private static final long DEFAULT_CACHE_MB = 256;
+    public static final int THUMBNAIL_HEIGHT = 72;
+
+    private static final ExecutorService DECODE_POOL = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "Figure-Decode-Thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+    private static final Map<Long, CompletableFuture<BufferedImage>> DECODING = new ConcurrentHashMap<>();
+    private static final LinkedHashMap<String, BufferedImage> DECODED = new LinkedHashMap<>(64, 0.75f, true);
+    private static long decodedBytes = 0;
+
+    public static class Figure {
+        private final long id;
+        private final byte[] compressed;
+        private final String displayId;
+        private volatile BufferedImage thumbnail;
+        private volatile CompletableFuture<BufferedImage> thumbnailLoad;
+
+        private Figure(long id, byte[] compressed, String displayId) {
+            this.id = id;
+            this.compressed = compressed;
+            this.displayId = displayId;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getDisplayId() {
+            return displayId;
+        }
+
+        public BufferedImage getThumbnail() {
+            return thumbnail;
+        }
+
+        public int getCompressedSize() {
+            return compressed.length;
+        }
+
+        public byte[] getCompressedBytes() {
+            return compressed;
+        }
+
+        public String getMimeType() {
+            if (compressed.length >= 3 && (compressed[0] & 0xFF) == 0xFF && (compressed[1] & 0xFF) == 0xD8) {
+                return "image/jpeg";
+            }
+            if (compressed.length >= 3 && compressed[0] == 'G' && compressed[1] == 'I' && compressed[2] == 'F') {
+                return "image/gif";
+            }
+            return "image/png";
+        }
+    }
+
+    private FigureStore() {
+    }
+
+    public static Figure register(byte[] compressed, String displayId) {
+        return new Figure(NEXT_ID.incrementAndGet(), compressed, displayId);
+    }
+
+    public static long getBudgetBytes() {
+        Preferences prefs = Preferences.userNodeForPackage(JupyterNotebookIDE.class);
+        return Math.max(16, prefs.getLong(PREF_FIGURE_CACHE_MB, DEFAULT_CACHE_MB)) * 1024L * 1024L;
+    }
+
+    public static synchronized long getDecodedBytes() {
+        return decodedBytes;
+    }
+
+
+    public static BufferedImage getDecoded(Figure figure) {
+        return getScaled(figure, 0);
+    }
+
+    public static synchronized BufferedImage getScaled(Figure figure, int bucket) {
+        return DECODED.get(key(figure, bucket));
+    }
+
+    public static void putScaled(Figure figure, int bucket, BufferedImage image) {
+        put(key(figure, bucket), image);
+    }
+
+    public static CompletableFuture<BufferedImage> decode(Figure figure) {
+        BufferedImage cached = getDecoded(figure);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<BufferedImage> load = DECODING.computeIfAbsent(figure.id, id -> CompletableFuture.supplyAsync(() -> {
+            try (ByteArrayInputStream bis = new ByteArrayInputStream(figure.compressed)) {
+                BufferedImage image = ImageIO.read(bis);
+                if (image == null) {
+                    return null;
+                }
+                image = toCompatibleImage(image);
+                put(key(figure, 0), image);
+                if (figure.thumbnail == null) {
+                    figure.thumbnail = scaleToHeight(image, THUMBNAIL_HEIGHT);
+                }
+                return image;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error decoding figure: " + e.getMessage());
+                return null;
+            }
+        }, DECODE_POOL));
+        load.whenComplete((image, ex) -> DECODING.remove(figure.id, load));
+        return load;
+    }
+
+    public static CompletableFuture<BufferedImage> thumbnail(Figure figure) {
+        if (figure.thumbnail != null) {
+            return CompletableFuture.completedFuture(figure.thumbnail);
+        }
+        synchronized (figure) {
+            if (figure.thumbnailLoad == null) {
+                figure.thumbnailLoad = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        BufferedImage preview = readSubsampled(figure.compressed, THUMBNAIL_HEIGHT);
+                        if (preview != null && figure.thumbnail == null) {
+                            figure.thumbnail = scaleToHeight(preview, THUMBNAIL_HEIGHT);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        System.err.println("Error decoding figure thumbnail: " + e.getMessage());
+                    }
+                    return figure.thumbnail;
+                }, DECODE_POOL);
+            }
+            return figure.thumbnailLoad;
+        }
+    }
+
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, DECODE_POOL);
+    }
+
+    public static synchronized void release(Figure figure) {
+        String prefix = figure.id + ":";
+        Iterator<Map.Entry<String, BufferedImage>> entries = DECODED.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, BufferedImage> entry = entries.next();
+            if (entry.getKey().startsWith(prefix)) {
+                decodedBytes -= sizeOf(entry.getValue());
+                entries.remove();
+            }
+        }
+    }
+
+
+    private static synchronized void put(String key, BufferedImage image) {
+        BufferedImage previous = DECODED.put(key, image);
+        if (previous != null) {
+            decodedBytes -= sizeOf(previous);
+        }
+        decodedBytes += sizeOf(image);
+
+        long budget = getBudgetBytes();
+        Iterator<Map.Entry<String, BufferedImage>> eldest = DECODED.entrySet().iterator();
+        while (decodedBytes > budget && DECODED.size() > 1 && eldest.hasNext()) {
+            Map.Entry<String, BufferedImage> entry = eldest.next();
+            if (entry.getKey().equals(key)) {
+                continue;
+            }
+            decodedBytes -= sizeOf(entry.getValue());
+            eldest.remove();
+        }
+    }
+
+    private static String key(Figure figure, int bucket) {
+        return figure.id + ":" + bucket;
+    }
+
+    private static long sizeOf(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * 4L;
+    }
+
+    private static BufferedImage readSubsampled(byte[] bytes, int targetHeight) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int factor = Math.max(1, reader.getHeight(0) / (targetHeight * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(factor, factor, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+
+    public static BufferedImage scaleDown(BufferedImage source, int width, int height) {
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage next = newCompatibleImage(currentWidth, currentHeight);
+            Graphics2D g2 = next.createGraphics();
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            g2.dispose();
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private static BufferedImage scaleToHeight(BufferedImage image, int height) {
+        if (image.getHeight() <= height) {
+            return image;
+        }
+        int width = Math.max(1, (int) Math.round((double) image.getWidth() * height / image.getHeight()));
+        return scaleDown(image, width, height);
+    }
+
+    private static BufferedImage toCompatibleImage(BufferedImage image) {
+        if (GraphicsEnvironment.isHeadless() || image.getColorModel().equals(GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration().getColorModel(Transparency.TRANSLUCENT))) {
+            return image;
+        }
+        BufferedImage compatible = newCompatibleImage(image.getWidth(), image.getHeight());
+        Graphics2D g2 = compatible.createGraphics();
+        g2.drawImage(image, 0, 0, null);
+        g2.dispose();
+        return compatible;
+    }
+
+    private static BufferedImage newCompatibleImage(int width, int height) {
+        if (!GraphicsEnvironment.isHeadless()) {
+            return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDefaultConfiguration().createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+        }
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+}
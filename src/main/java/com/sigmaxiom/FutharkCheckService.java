@@ -0,0 +1,566 @@
+package com.sigmaxiom;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class FutharkCheckService {
+
+    private static final int CACHE_LIMIT = 256;
+    private static final long LSP_TIMEOUT_MS = 4000;
+    private static final long LSP_RETRY_MS = 15000;
+    private static final long LSP_RETRY_MAX_MS = 5 * 60 * 1000;
+    private static final long CHECK_TIMEOUT_SECONDS = 60;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final Pattern IMPORT = Pattern.compile("\\bimport\\s+\"([^\"]+)\"");
+    private static final Pattern INLINE_DIAGNOSTIC = Pattern.compile(
+        "^.+?:(\\d+):(\\d+)(?:-(?:\\d+:)?(\\d+))?:\\s*(error|warning):\\s*(.+)$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LOCATED_DIAGNOSTIC = Pattern.compile(
+        "^(Error|Warning) at .+?:(\\d+):(\\d+)(?:-(?:\\d+:)?(\\d+))?:?\\s*(.*)$");
+
+    private static class ModuleHash {
+        private final long lastModified;
+        private final long size;
+        private final String hash;
+        private final List<String> imports;
+
+        ModuleHash(long lastModified, long size, String hash, List<String> imports) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.hash = hash;
+            this.imports = imports;
+        }
+    }
+
+    private final String futharkExecutable;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService timeouts;
+    private final Map<String, String> results = new LinkedHashMap<String, String>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > CACHE_LIMIT;
+        }
+    };
+    private final Map<String, ModuleHash> moduleHashes = new ConcurrentHashMap<>();
+    private final CompletableFuture<String> version = new CompletableFuture<>();
+    private final AtomicInteger documentCounter = new AtomicInteger();
+    private volatile LspSession lsp;
+    private volatile long lspRetryAt = 0;
+    private int lspFailures = 0;
+    private volatile boolean shutdown = false;
+
+    public FutharkCheckService(String envPath) {
+        File envFuthark = envPath == null ? null : new File(envPath, "bin/futhark");
+        this.futharkExecutable = envFuthark != null && envFuthark.exists() ? envFuthark.getAbsolutePath() : "futhark";
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "Futhark-Check-Thread");
+            t.setDaemon(true);
+            return t;
+        });
+        this.timeouts = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Futhark-Check-Timeout");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.execute(this::probeVersion);
+    }
+
+    public boolean isAvailable() {
+        return version.isDone() && !version.isCompletedExceptionally();
+    }
+
+    public String newDocumentName() {
+        return ".sigmaxiom_cell_" + documentCounter.incrementAndGet() + ".fut";
+    }
+
+
+    public CompletableFuture<String> check(String code, File directory, String documentName) {
+        File dir = directory != null && directory.isDirectory() ? directory : new File(System.getProperty("java.io.tmpdir"));
+        String key = cacheKey(code, dir);
+        synchronized (results) {
+            String cached = results.get(key);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+
+        CompletableFuture<String> check;
+        LspSession session = System.currentTimeMillis() < lspRetryAt ? null : lspSession(dir);
+        if (session != null) {
+            check = checkWithLsp(session, code, dir, documentName);
+        } else {
+            check = checkWithCompiler(code, dir);
+        }
+        check.thenAccept(json -> {
+            synchronized (results) {
+                results.put(key, json);
+            }
+        });
+        return check;
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        LspSession session = lsp;
+        if (session != null) {
+            session.close();
+        }
+        executor.shutdownNow();
+        timeouts.shutdownNow();
+    }
+
+
+    private void probeVersion() {
+        try {
+            Process process = new ProcessBuilder(futharkExecutable, "--version").redirectErrorStream(true).start();
+            String output = new String(readAll(process.getInputStream()), StandardCharsets.UTF_8).trim();
+            if (process.waitFor() == 0) {
+                version.complete(output);
+                return;
+            }
+            version.completeExceptionally(new IOException("futhark --version exited with " + process.exitValue()));
+        } catch (Exception e) {
+            version.completeExceptionally(e);
+        }
+    }
+
+    private String cacheKey(String code, File dir) {
+        StringBuilder material = new StringBuilder();
+        material.append(version.getNow("")).append('\0').append(code).append('\0');
+        Set<String> visited = new HashSet<>();
+        appendImportHashes(code, dir, material, visited);
+        return sha256(material.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void appendImportHashes(String code, File dir, StringBuilder material, Set<String> visited) {
+        for (String name : parseImports(code)) {
+            File module = new File(dir, name.endsWith(".fut") ? name : name + ".fut");
+            String path = module.getAbsolutePath();
+            if (!visited.add(path)) {
+                continue;
+            }
+            ModuleHash hash = moduleHash(module);
+            material.append(path).append('=').append(hash == null ? "missing" : hash.hash).append('\0');
+            if (hash != null) {
+                for (String nested : hash.imports) {
+                    appendImportHashes("import \"" + nested + "\"", module.getParentFile(), material, visited);
+                }
+            }
+        }
+    }
+
+    private ModuleHash moduleHash(File module) {
+        if (!module.isFile()) {
+            return null;
+        }
+        String path = module.getAbsolutePath();
+        ModuleHash cached = moduleHashes.get(path);
+        if (cached != null && cached.lastModified == module.lastModified() && cached.size == module.length()) {
+            return cached;
+        }
+        try {
+            byte[] content = Files.readAllBytes(module.toPath());
+            ModuleHash hash = new ModuleHash(module.lastModified(), module.length(), sha256(content),
+                parseImports(new String(content, StandardCharsets.UTF_8)));
+            moduleHashes.put(path, hash);
+            return hash;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static List<String> parseImports(String code) {
+        List<String> imports = new ArrayList<>();
+        Matcher matcher = IMPORT.matcher(code);
+        while (matcher.find()) {
+            imports.add(matcher.group(1));
+        }
+        return imports;
+    }
+
+
+    private CompletableFuture<String> checkWithCompiler(String code, File dir) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        boolean hasImports = !parseImports(code).isEmpty();
+        executor.execute(() -> {
+            File source = null;
+            try {
+                source = File.createTempFile(".sigmaxiom_check_", ".fut", hasImports ? dir : null);
+                Files.write(source.toPath(), code.getBytes(StandardCharsets.UTF_8));
+                ProcessBuilder pb = new ProcessBuilder(futharkExecutable, "check", source.getName());
+                pb.directory(source.getParentFile());
+                pb.redirectErrorStream(true);
+                Process process = pb.start();
+                result.whenComplete((r, ex) -> {
+                    if (result.isCancelled()) {
+                        process.destroyForcibly();
+                    }
+                });
+                Future<byte[]> output = executor.submit(() -> readAll(process.getInputStream()));
+                if (!process.waitFor(CHECK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                    result.completeExceptionally(new IOException("futhark check timed out"));
+                    return;
+                }
+                result.complete(parseCompilerOutput(new String(output.get(), StandardCharsets.UTF_8)).toString());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            } finally {
+                if (source != null) {
+                    source.delete();
+                }
+            }
+        });
+        return result;
+    }
+
+    static JSONArray parseCompilerOutput(String output) {
+        JSONArray issues = new JSONArray();
+        String[] lines = output.split("\\r?\\n");
+        for (int i = 0; i < lines.length; i++) {
+            Matcher inline = INLINE_DIAGNOSTIC.matcher(lines[i]);
+            if (inline.matches()) {
+                issues.put(issue(inline.group(1), inline.group(2), inline.group(3),
+                    inline.group(4).toLowerCase(), inline.group(5)));
+                continue;
+            }
+            Matcher located = LOCATED_DIAGNOSTIC.matcher(lines[i]);
+            if (located.matches()) {
+                StringBuilder message = new StringBuilder(located.group(5).trim());
+                while (i + 1 < lines.length && !lines[i + 1].trim().isEmpty()
+                        && !LOCATED_DIAGNOSTIC.matcher(lines[i + 1]).matches()) {
+                    if (message.length() > 0) {
+                        message.append(' ');
+                    }
+                    message.append(lines[++i].trim());
+                }
+                issues.put(issue(located.group(2), located.group(3), located.group(4),
+                    located.group(1).toLowerCase(), message.toString()));
+            }
+        }
+        return issues;
+    }
+
+    private static JSONObject issue(String line, String column, String endColumn, String type, String message) {
+        int col = Integer.parseInt(column) - 1;
+        int end = endColumn != null ? Integer.parseInt(endColumn) - 1 : col;
+        JSONObject issue = new JSONObject();
+        issue.put("line", Integer.parseInt(line) - 1);
+        issue.put("column", col);
+        issue.put("length", Math.max(1, end - col + 1));
+        issue.put("message", "Futhark " + type + ": " + message);
+        issue.put("type", "error".equals(type) ? "error" : "warning");
+        return issue;
+    }
+
+
+    private synchronized LspSession lspSession(File dir) {
+        if (shutdown || !isAvailable()) {
+            return null;
+        }
+        if (lsp != null && lsp.alive && lsp.root.equals(dir)) {
+            return lsp;
+        }
+        if (lsp != null) {
+            lsp.close();
+        }
+        try {
+            lsp = new LspSession(dir);
+            return lsp;
+        } catch (IOException e) {
+            System.err.println("futhark lsp unavailable, using futhark check: " + e.getMessage());
+            lsp = null;
+            lspFailed();
+            return null;
+        }
+    }
+
+    private synchronized void lspFailed() {
+        long delay = Math.min(LSP_RETRY_MAX_MS, LSP_RETRY_MS << Math.min(lspFailures, 5));
+        lspFailures++;
+        lspRetryAt = System.currentTimeMillis() + delay;
+    }
+
+    private synchronized void lspAnswered() {
+        lspFailures = 0;
+        lspRetryAt = 0;
+    }
+
+    private CompletableFuture<String> checkWithLsp(LspSession session, String code, File dir, String documentName) {
+        String uri = new File(dir, documentName).toURI().toString();
+        CompletableFuture<String> diagnostics = session.update(uri, code);
+        CompletableFuture<String> result = new CompletableFuture<>();
+        AtomicBoolean timedOut = new AtomicBoolean();
+        timeouts.schedule(() -> {
+            if (!diagnostics.isDone()) {
+                System.err.println("futhark lsp did not answer, falling back to futhark check");
+                timedOut.set(true);
+                diagnostics.cancel(false);
+                session.close();
+                lspFailed();
+            }
+        }, LSP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        diagnostics.whenComplete((json, ex) -> {
+            if (ex == null) {
+                lspAnswered();
+                result.complete(json);
+            } else if (diagnostics.isCancelled() && !timedOut.get()) {
+                result.cancel(false);
+            } else {
+                checkWithCompiler(code, dir).whenComplete((fallback, fallbackEx) -> {
+                    if (fallbackEx != null) {
+                        result.completeExceptionally(fallbackEx);
+                    } else {
+                        result.complete(fallback);
+                    }
+                });
+            }
+        });
+        return result;
+    }
+
+    private static class PendingDiagnostics {
+        private final int version;
+        private final int staleReports;
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+        private int skipped = 0;
+
+        PendingDiagnostics(int version, int staleReports) {
+            this.version = version;
+            this.staleReports = staleReports;
+        }
+    }
+
+    private class LspSession {
+        private final File root;
+        private final Process process;
+        private final OutputStream stdin;
+        private final Map<String, Integer> versions = new ConcurrentHashMap<>();
+        private final Map<String, PendingDiagnostics> waiting = new ConcurrentHashMap<>();
+        private final AtomicInteger nextId = new AtomicInteger();
+        private volatile boolean alive = true;
+
+        LspSession(File root) throws IOException {
+            this.root = root;
+            ProcessBuilder pb = new ProcessBuilder(futharkExecutable, "lsp");
+            pb.directory(root);
+            pb.redirectError(new File(File.separatorChar == '\\' ? "NUL" : "/dev/null"));
+            process = pb.start();
+            stdin = process.getOutputStream();
+
+            Thread reader = new Thread(this::readMessages, "Futhark-LSP-Reader");
+            reader.setDaemon(true);
+            reader.start();
+
+            JSONObject params = new JSONObject();
+            params.put("processId", JSONObject.NULL);
+            params.put("rootUri", root.toURI().toString());
+            params.put("capabilities", new JSONObject());
+            send(new JSONObject().put("jsonrpc", "2.0").put("id", nextId.incrementAndGet())
+                .put("method", "initialize").put("params", params));
+            send(new JSONObject().put("jsonrpc", "2.0").put("method", "initialized").put("params", new JSONObject()));
+        }
+
+        synchronized CompletableFuture<String> update(String uri, String code) {
+            Integer previousVersion = versions.get(uri);
+            int version = previousVersion == null ? 1 : previousVersion + 1;
+            versions.put(uri, version);
+
+            
+            PendingDiagnostics previous;
+            PendingDiagnostics pending;
+            synchronized (waiting) {
+                previous = waiting.get(uri);
+                int staleReports = previous == null ? 0 : previous.staleReports - previous.skipped + 1;
+                pending = new PendingDiagnostics(version, staleReports);
+                waiting.put(uri, pending);
+            }
+            if (previous != null) {
+                previous.future.cancel(false);
+            }
+            try {
+                JSONObject document = new JSONObject().put("uri", uri).put("version", version);
+                if (previousVersion == null) {
+                    document.put("languageId", "futhark").put("text", code);
+                    send(new JSONObject().put("jsonrpc", "2.0").put("method", "textDocument/didOpen")
+                        .put("params", new JSONObject().put("textDocument", document)));
+                } else {
+                    JSONArray changes = new JSONArray().put(new JSONObject().put("text", code));
+                    send(new JSONObject().put("jsonrpc", "2.0").put("method", "textDocument/didChange")
+                        .put("params", new JSONObject().put("textDocument", document).put("contentChanges", changes)));
+                }
+            } catch (IOException e) {
+                alive = false;
+                waiting.remove(uri, pending);
+                pending.future.completeExceptionally(e);
+            }
+            return pending.future;
+        }
+
+        private synchronized void send(JSONObject message) throws IOException {
+            byte[] body = message.toString().getBytes(StandardCharsets.UTF_8);
+            stdin.write(("Content-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            stdin.write(body);
+            stdin.flush();
+        }
+
+        private void readMessages() {
+            try (InputStream in = process.getInputStream()) {
+                while (true) {
+                    int length = -1;
+                    String header;
+                    while (!(header = readHeaderLine(in)).isEmpty()) {
+                        if (header.toLowerCase().startsWith("content-length:")) {
+                            length = Integer.parseInt(header.substring(15).trim());
+                        }
+                    }
+                    if (length < 0) {
+                        continue;
+                    }
+                    byte[] body = new byte[length];
+                    int read = 0;
+                    while (read < length) {
+                        int n = in.read(body, read, length - read);
+                        if (n < 0) {
+                            throw new IOException("futhark lsp closed its output");
+                        }
+                        read += n;
+                    }
+                    handle(new JSONObject(new String(body, StandardCharsets.UTF_8)));
+                }
+            } catch (Exception e) {
+                if (!shutdown) {
+                    System.err.println("futhark lsp stopped: " + e.getMessage());
+                }
+            }
+            alive = false;
+            for (PendingDiagnostics pending : waiting.values()) {
+                pending.future.completeExceptionally(new IOException("futhark lsp exited"));
+            }
+            waiting.clear();
+        }
+
+        private String readHeaderLine(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c < 0) {
+                    throw new IOException("futhark lsp closed its output");
+                }
+                if (c != '\r') {
+                    line.write(c);
+                }
+            }
+            return new String(line.toByteArray(), StandardCharsets.US_ASCII);
+        }
+
+        private void handle(JSONObject message) {
+            if (!"textDocument/publishDiagnostics".equals(message.optString("method"))) {
+                return;
+            }
+            JSONObject params = message.optJSONObject("params");
+            if (params == null) {
+                return;
+            }
+            String uri = params.optString("uri");
+            PendingDiagnostics pending;
+            synchronized (waiting) {
+                pending = waiting.get(uri);
+                if (pending == null) {
+                    return;
+                }
+                if (params.has("version")) {
+                    if (params.optInt("version") < pending.version) {
+                        return;
+                    }
+                } else if (pending.skipped < pending.staleReports) {
+                    pending.skipped++;
+                    return;
+                }
+                waiting.remove(uri);
+            }
+            JSONArray issues = new JSONArray();
+            JSONArray diagnostics = params.optJSONArray("diagnostics");
+            for (int i = 0; diagnostics != null && i < diagnostics.length(); i++) {
+                JSONObject diagnostic = diagnostics.getJSONObject(i);
+                JSONObject range = diagnostic.optJSONObject("range");
+                JSONObject start = range != null ? range.optJSONObject("start") : null;
+                JSONObject end = range != null ? range.optJSONObject("end") : null;
+                int line = start != null ? start.optInt("line") : 0;
+                int column = start != null ? start.optInt("character") : 0;
+                int endColumn = end != null && end.optInt("line") == line ? end.optInt("character") : column + 1;
+                boolean error = diagnostic.optInt("severity", 1) == 1;
+                JSONObject issue = new JSONObject();
+                issue.put("line", line);
+                issue.put("column", column);
+                issue.put("length", Math.max(1, endColumn - column));
+                issue.put("message", "Futhark " + (error ? "error" : "warning") + ": " + diagnostic.optString("message"));
+                issue.put("type", error ? "error" : "warning");
+                issues.put(issue);
+            }
+            pending.future.complete(issues.toString());
+        }
+
+        void close() {
+            alive = false;
+            try {
+                send(new JSONObject().put("jsonrpc", "2.0").put("id", nextId.incrementAndGet()).put("method", "shutdown"));
+                send(new JSONObject().put("jsonrpc", "2.0").put("method", "exit"));
+            } catch (IOException ignored) {
+            }
+            process.destroy();
+        }
+    }
+
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(data);
+            char[] hex = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+                hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xF];
+            }
+            return new String(hex);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.sigmaxiom;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.zeromq.SocketType;
@@ -10,38 +12,46 @@ import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.io.InputStream;
 import java.io.IOException;
 
-interface KernelStatusListener {
-    void onStatusChange(String status);
-}
-
 public class JupyterKernelClient {
     private ZContext context;
     private ZMQ.Socket shellSocket;
     private ZMQ.Socket iopubSocket;
+    private ZMQ.Socket controlSocket;
     private String key;
     private String signatureScheme;
     private Process kernelProcess;
     private String connectionFilePath;
     private Long kernelPid;
+    private volatile String interruptMode = "signal";
 
     private KernelStatusListener statusListener; 
 
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private final ThreadLocal<Mac> hmac = ThreadLocal.withInitial(this::createMac);
+
     
     public void setStatusListener(KernelStatusListener listener) {
         this.statusListener = listener;
@@ -62,6 +72,8 @@ public class JupyterKernelClient {
         String ip = connInfo.getString("ip");
         int shellPort = connInfo.getInt("shell_port");
         int iopubPort = connInfo.getInt("iopub_port");
+        int controlPort = connInfo.getInt("control_port");
+        int hbPort = connInfo.getInt("hb_port");
         this.key = connInfo.getString("key");
         this.signatureScheme = connInfo.getString("signature_scheme");
         
@@ -80,41 +92,68 @@ public class JupyterKernelClient {
         iopubSocket.connect(transport + "://" + ip + ":" + iopubPort);
         iopubSocket.subscribe(ZMQ.SUBSCRIPTION_ALL); 
         
+        
+        controlSocket = context.createSocket(SocketType.DEALER);
+        controlSocket.connect(transport + "://" + ip + ":" + controlPort);
+        
+        
+        String wakeupAddress = "inproc://shell-wakeup-" + UUID.randomUUID();
+        wakeupReceiver = context.createSocket(SocketType.PAIR);
+        wakeupReceiver.bind(wakeupAddress);
+        wakeupSender = context.createSocket(SocketType.PAIR);
+        wakeupSender.connect(wakeupAddress);
+        
+        startIoPubReader();
+        startShellWorker();
+        startHeartbeat(transport + "://" + ip + ":" + hbPort);
+        
         System.out.println("JupyterKernelClient initialized successfully");
     }
     
     
-    private String createSignature(String headerStr, String parentHeaderStr, String metadataStr, String contentStr) {
+    private Mac createMac() {
         try {
-            if (this.signatureScheme.equals("hmac-sha256")) {
-                Mac mac = Mac.getInstance("HmacSHA256");
-                SecretKeySpec keySpec = new SecretKeySpec(this.key.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
-                mac.init(keySpec);
-                
-                mac.update(headerStr.getBytes(StandardCharsets.UTF_8));
-                mac.update(parentHeaderStr.getBytes(StandardCharsets.UTF_8));
-                mac.update(metadataStr.getBytes(StandardCharsets.UTF_8));
-                mac.update(contentStr.getBytes(StandardCharsets.UTF_8));
-                
-                byte[] digest = mac.doFinal();
-                return bytesToHex(digest);
-            } else {
-                System.out.println("Unsupported signature scheme: " + this.signatureScheme);
-                return "";
-            }
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(this.key.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return mac;
         } catch (Exception e) {
             e.printStackTrace();
-            return "";
+            return null;
+        }
+    }
+
+    private byte[] sign(byte[]... parts) {
+        if (!"hmac-sha256".equals(this.signatureScheme)) {
+            System.out.println("Unsupported signature scheme: " + this.signatureScheme);
+            return new byte[0];
+        }
+        Mac mac = hmac.get();
+        if (mac == null) {
+            return new byte[0];
+        }
+        for (byte[] part : parts) {
+            mac.update(part);
+        }
+        return toHex(mac.doFinal());
+    }
+
+    private boolean verifySignature(List<byte[]> frames, int delimiterIndex) {
+        if (this.key.isEmpty()) {
+            return true;
         }
+        byte[] expected = sign(frames.get(delimiterIndex + 2), frames.get(delimiterIndex + 3),
+                               frames.get(delimiterIndex + 4), frames.get(delimiterIndex + 5));
+        return MessageDigest.isEqual(expected, frames.get(delimiterIndex + 1));
     }
     
     
-    private static String bytesToHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b));
+    private static byte[] toHex(byte[] bytes) {
+        byte[] hex = new byte[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0f];
         }
-        return sb.toString();
+        return hex;
     }
     
     public Long getKernelPid() {
@@ -125,213 +164,728 @@ public class JupyterKernelClient {
     public void setKernelPid(Long pid) {
         this.kernelPid = pid;
     }
-    public boolean interruptKernel() {
+    public void setInterruptMode(String interruptMode) {
+        this.interruptMode = interruptMode;
+    }
+
+    public CompletableFuture<Boolean> interruptKernel() {
+        if ("message".equals(interruptMode) || kernelPid == null) {
+            if (!"message".equals(interruptMode)) {
+                System.err.println("No kernel PID available, falling back to interrupt_request");
+            }
+            return sendInterruptRequest();
+        }
+        return CompletableFuture.supplyAsync(this::signalInterrupt, KERNEL_WATCHDOG);
+    }
+
+    private boolean signalInterrupt() {
         System.out.println("Attempting to interrupt kernel with PID: " + kernelPid);
-        if (kernelPid != null) {
-            try {
-                
-                ProcessBuilder pb = new ProcessBuilder("kill", "-2", kernelPid.toString());
-                pb.redirectError(ProcessBuilder.Redirect.INHERIT); 
-                pb.redirectOutput(ProcessBuilder.Redirect.INHERIT); 
-                Process process = pb.start();
-                int exitCode = process.waitFor();
-                System.out.println("Interrupt kernel command exited with code: " + exitCode);
-                return exitCode == 0;
-            } catch (Exception e) {
+        try {
+            
+            ProcessBuilder pb = new ProcessBuilder("kill", "-2", kernelPid.toString());
+            pb.redirectError(ProcessBuilder.Redirect.INHERIT); 
+            pb.redirectOutput(ProcessBuilder.Redirect.INHERIT); 
+            Process process = pb.start();
+            int exitCode = process.waitFor();
+            System.out.println("Interrupt kernel command exited with code: " + exitCode);
+            return exitCode == 0;
+        } catch (Exception e) {
+            System.err.println("Error interrupting kernel: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private CompletableFuture<Boolean> sendInterruptRequest() {
+        System.out.println("Sending interrupt_request on control channel");
+        String msgId = UUID.randomUUID().toString();
+        CompletableFuture<JSONObject> reply = sendRequest(msgId, "interrupt_request", new JSONObject(), true);
+        ScheduledFuture<?> timeout = KERNEL_WATCHDOG.schedule(
+            () -> reply.completeExceptionally(new TimeoutException("no interrupt_reply")), 2000, TimeUnit.MILLISECONDS);
+        return reply.handle((content, e) -> {
+            timeout.cancel(false);
+            if (e != null) {
+                pendingReplies.remove(msgId);
                 System.err.println("Error interrupting kernel: " + e.getMessage());
-                e.printStackTrace();
                 return false;
             }
-        } else {
-            System.err.println("Cannot interrupt kernel: No PID available");
-            return false;
-        }
+            return !"error".equals(content.optString("status"));
+        });
     }
 
     
-    private static final ExecutorService KERNEL_EXECUTOR = 
-        Executors.newFixedThreadPool(2, r -> {
-            Thread t = new Thread(r, "Kernel-Communication-Thread");
+    private static final ScheduledExecutorService KERNEL_WATCHDOG = 
+        Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Kernel-Watchdog-Thread");
             t.setDaemon(true);  
             return t;
         });
 
-    private void clearPendingMessages() {
-        int maxClear = 2000; 
-        try {
-            for (int i = 0; i < maxClear; i++) {
-                if (iopubSocket.recv(ZMQ.DONTWAIT) == null) {
-                    break; 
+    private static final byte[] DELIMITER = "<IDS|MSG>".getBytes(StandardCharsets.UTF_8);
+
+    private final Map<String, ExecutionSink> pendingExecutions = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<JSONObject>> pendingReplies = new ConcurrentHashMap<>();
+    private final Queue<ShellRequest> outgoingRequests = new ConcurrentLinkedQueue<>();
+    private ZMQ.Socket wakeupSender;
+    private ZMQ.Socket wakeupReceiver;
+    private Thread iopubReader;
+    private Thread shellWorker;
+    private Thread heartbeatThread;
+    private final Object heartbeatLock = new Object();
+    private volatile long heartbeatInterval = 2000;
+    private volatile boolean kernelAlive = true;
+    private static final int HEARTBEAT_MAX_MISSES = 3;
+    private static final byte[] HEARTBEAT_PING = "ping".getBytes(StandardCharsets.UTF_8);
+    private volatile boolean running = true;
+
+    private static final long WARNING_TIMEOUT_MS = 30000;
+
+    private static class ExecutionSink {
+        private final StringBuilder output = new StringBuilder();
+        private final ExecutionListener listener;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private ScheduledFuture<?> warning;
+
+        ExecutionSink(ExecutionListener listener) {
+            this.listener = listener;
+        }
+
+        synchronized void append(String text) {
+            if (listener == null) {
+                output.append(text).append("\n");
+            } else {
+                try {
+                    listener.onOutput(text);
+                } catch (Exception e) {
+                    System.err.println("Error in execution listener: " + e.getMessage());
                 }
-                
-                while (iopubSocket.hasReceiveMore()) {
-                    iopubSocket.recv(ZMQ.DONTWAIT);
+            }
+        }
+
+        void appendDisplayData(String mimeType, byte[] data, String displayId, boolean update) {
+            if (listener != null) {
+                try {
+                    listener.onDisplayData(mimeType, data, displayId, update);
+                } catch (Exception e) {
+                    System.err.println("Error in execution listener: " + e.getMessage());
                 }
             }
-        } catch (Exception e) {
-            
         }
+
+        void started() {
+            synchronized (this) {
+                if (warning != null) {
+                    return;
+                }
+                warning = KERNEL_WATCHDOG.schedule(() -> append(
+                    "\n[Warning: Execution is taking longer than expected (>" +
+                    WARNING_TIMEOUT_MS / 1000 + " seconds). Still running...]\n"),
+                    WARNING_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            }
+            result.whenComplete((text, e) -> warning.cancel(false));
+            if (listener != null) {
+                try {
+                    listener.onExecutionStarted();
+                } catch (Exception e) {
+                    System.err.println("Error in execution listener: " + e.getMessage());
+                }
+            }
+        }
+
+        void executionCount(int executionCount) {
+            if (listener != null) {
+                try {
+                    listener.onExecutionCount(executionCount);
+                } catch (Exception e) {
+                    System.err.println("Error in execution listener: " + e.getMessage());
+                }
+            }
+        }
+
+        void clearOutput(boolean wait) {
+            if (listener != null) {
+                try {
+                    listener.onClearOutput(wait);
+                } catch (Exception e) {
+                    System.err.println("Error in execution listener: " + e.getMessage());
+                }
+            }
+        }
+
+        void complete() {
+            String text;
+            synchronized (this) {
+                text = output.toString().trim();
+            }
+            result.complete(text);
+        }
+    }
+
+    private void startIoPubReader() {
+        iopubReader = new Thread(() -> {
+            ZMQ.Poller poller = context.createPoller(1);
+            poller.register(iopubSocket, ZMQ.Poller.POLLIN);
+            while (running && !Thread.currentThread().isInterrupted()) {
+                try {
+                    if (poller.poll(100) > 0 && poller.pollin(0)) {
+                        processIoPubMessage(receiveFrames(iopubSocket));
+                    }
+                } catch (Exception e) {
+                    if (running) {
+                        System.err.println("Error reading iopub socket: " + e.getMessage());
+                    }
+                }
+            }
+            poller.close();
+        }, "Kernel-IOPub-Reader");
+        iopubReader.setDaemon(true);
+        iopubReader.start();
     }
 
     public CompletableFuture<String> executeCode(String code) {
-        clearPendingMessages();
-        
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String msgId = UUID.randomUUID().toString();
-                
-                
-                JSONObject header = new JSONObject();
-                header.put("msg_id", msgId);
-                header.put("username", "user");
-                header.put("session", UUID.randomUUID().toString());
-                header.put("msg_type", "execute_request");
-                header.put("version", "5.0");
-                String headerStr = header.toString();
-                String parentHeaderStr = "{}";
-                String metadataStr = "{}";
-                JSONObject content = new JSONObject();
-                content.put("code", code);
-                content.put("silent", false);
-                content.put("store_history", true);
-                content.put("user_expressions", new JSONObject());
-                content.put("allow_stdin", false);
-                String contentStr = content.toString();
-                String signature = createSignature(headerStr, parentHeaderStr, metadataStr, contentStr);
+        return executeCode(code, null);
+    }
 
-                
-                shellSocket.sendMore("<IDS|MSG>".getBytes(StandardCharsets.UTF_8));
-                shellSocket.sendMore(signature.getBytes(StandardCharsets.UTF_8));
-                shellSocket.sendMore(headerStr.getBytes(StandardCharsets.UTF_8));
-                shellSocket.sendMore(parentHeaderStr.getBytes(StandardCharsets.UTF_8));
-                shellSocket.sendMore(metadataStr.getBytes(StandardCharsets.UTF_8));
-                shellSocket.send(contentStr.getBytes(StandardCharsets.UTF_8));
+    /**
+     * Streams output to the listener as it arrives. When a listener is given, the output is not
+     * buffered and the returned future completes with an empty string once the kernel is idle;
+     * without one it completes with the collected output.
+     */
+    public CompletableFuture<String> executeCode(String code, ExecutionListener listener) {
+        return execute(code, listener, false);
+    }
 
-                
-                StringBuilder output = new StringBuilder();
-                boolean done = false;
-                long startTime = System.currentTimeMillis();
-                long warningTimeout = 30000; 
-                boolean warningShown = false;
+    public CompletableFuture<String> executeSilently(String code) {
+        return execute(code, null, true);
+    }
 
+    private CompletableFuture<String> execute(String code, ExecutionListener listener, boolean silent) {
+        String msgId = UUID.randomUUID().toString();
+        ExecutionSink sink = new ExecutionSink(listener);
+        pendingExecutions.put(msgId, sink);
+
+        JSONObject content = new JSONObject();
+        content.put("code", code);
+        content.put("silent", silent);
+        content.put("store_history", !silent);
+        content.put("user_expressions", new JSONObject());
+        content.put("allow_stdin", false);
+        content.put("stop_on_error", false);
+
+        sendShellRequest(msgId, "execute_request", content)
+            .thenAccept(reply -> {
                 
-                while (shellSocket.hasReceiveMore()) { shellSocket.recv(); } 
-                List<byte[]> shellReply = new ArrayList<>();
-                for(int i=0; i<6; i++) { 
-                    shellReply.add(shellSocket.recv());
+                if ("aborted".equals(reply.optString("status"))) {
+                    pendingExecutions.remove(msgId);
+                    sink.append("[Execution aborted]");
+                    sink.complete();
                 }
+            })
+            .exceptionally(e -> {
+                pendingExecutions.remove(msgId);
+                sink.result.completeExceptionally(e);
+                return null;
+            });
 
-                
-                ZMQ.Poller poller = context.createPoller(1);
-                poller.register(iopubSocket, ZMQ.Poller.POLLIN);
+        return sink.result;
+    }
 
-                while (!done) {
-                    long elapsed = System.currentTimeMillis() - startTime;
-                    
+    private CompletableFuture<JSONObject> sendShellRequest(String msgId, String msgType, JSONObject content) {
+        return sendRequest(msgId, msgType, content, false);
+    }
+
+    private CompletableFuture<JSONObject> sendRequest(String msgId, String msgType, JSONObject content, boolean control) {
+        CompletableFuture<JSONObject> reply = new CompletableFuture<>();
+        if (!running) {
+            reply.completeExceptionally(new IllegalStateException("Kernel client closed"));
+            return reply;
+        }
+        if (!kernelAlive && !control) {
+            reply.completeExceptionally(new IllegalStateException("Kernel is not responding (heartbeat lost)"));
+            return reply;
+        }
+        pendingReplies.put(msgId, reply);
+
+        JSONObject header = new JSONObject();
+        header.put("msg_id", msgId);
+        header.put("username", "user");
+        header.put("session", UUID.randomUUID().toString());
+        header.put("msg_type", msgType);
+        header.put("version", "5.0");
+
+        outgoingRequests.add(new ShellRequest(header.toString(), content.toString(), control));
+        synchronized (wakeupSender) {
+            try {
+                wakeupSender.send(new byte[0], ZMQ.DONTWAIT);
+            } catch (Exception e) {
+                pendingReplies.remove(msgId);
+                reply.completeExceptionally(e);
+            }
+        }
+        return reply;
+    }
+
+    private static class ShellRequest {
+        private final String headerStr;
+        private final String contentStr;
+        private final boolean control;
+
+        ShellRequest(String headerStr, String contentStr, boolean control) {
+            this.headerStr = headerStr;
+            this.contentStr = contentStr;
+            this.control = control;
+        }
+    }
+
+    private void startShellWorker() {
+        shellWorker = new Thread(() -> {
+            ZMQ.Poller poller = context.createPoller(3);
+            poller.register(shellSocket, ZMQ.Poller.POLLIN);
+            poller.register(wakeupReceiver, ZMQ.Poller.POLLIN);
+            poller.register(controlSocket, ZMQ.Poller.POLLIN);
+            while (running && !Thread.currentThread().isInterrupted()) {
+                try {
                     
-                    if (!warningShown && elapsed > warningTimeout) {
-                        output.append("\n[Warning: Execution is taking longer than expected (>")
-                            .append(warningTimeout/1000)
-                            .append(" seconds). Still running...]\n\n");
-                        warningShown = true;
+                    ShellRequest request;
+                    while ((request = outgoingRequests.poll()) != null) {
+                        sendShellMessage(request);
                     }
-                    
-                    if (poller.poll(200) > 0) { 
-                        String result = processIoPubMessage(iopubSocket, msgId);
-                        if ("EXECUTION_COMPLETE".equals(result)) {
-                            done = true; 
-                        } else if (result != null && !result.isEmpty()) {
-                            output.append(result).append("\n");
+                    if (poller.poll(100) > 0) {
+                        if (poller.pollin(1)) {
+                            while (wakeupReceiver.recv(ZMQ.DONTWAIT) != null) { }
+                        }
+                        if (poller.pollin(0)) {
+                            processShellReply(receiveFrames(shellSocket));
                         }
+                        if (poller.pollin(2)) {
+                            processShellReply(receiveFrames(controlSocket));
+                        }
+                    }
+                } catch (Exception e) {
+                    if (running) {
+                        System.err.println("Error on shell socket: " + e.getMessage());
                     }
                 }
-                
-                return output.toString().trim();
+            }
+            poller.close();
+        }, "Kernel-Shell-Worker");
+        shellWorker.setDaemon(true);
+        shellWorker.start();
+    }
+
+    private static List<byte[]> receiveFrames(ZMQ.Socket socket) {
+        List<byte[]> frames = new ArrayList<>();
+        do {
+            frames.add(socket.recv(0));
+        } while (socket.hasReceiveMore());
+        return frames;
+    }
+
+    private void sendShellMessage(ShellRequest request) {
+        byte[] header = request.headerStr.getBytes(StandardCharsets.UTF_8);
+        byte[] parentHeader = "{}".getBytes(StandardCharsets.UTF_8);
+        byte[] metadata = "{}".getBytes(StandardCharsets.UTF_8);
+        byte[] content = request.contentStr.getBytes(StandardCharsets.UTF_8);
+
+        ZMQ.Socket socket = request.control ? controlSocket : shellSocket;
+        socket.sendMore(DELIMITER);
+        socket.sendMore(sign(header, parentHeader, metadata, content));
+        socket.sendMore(header);
+        socket.sendMore(parentHeader);
+        socket.sendMore(metadata);
+        socket.send(content);
+    }
+
+    public void setHeartbeatInterval(long intervalMillis) {
+        this.heartbeatInterval = Math.max(100, intervalMillis);
+    }
+
+    public boolean isKernelAlive() {
+        return kernelAlive;
+    }
+
+    private void startHeartbeat(String address) {
+        heartbeatThread = new Thread(() -> {
+            ZMQ.Socket heartbeatSocket = createHeartbeatSocket(address);
+            int missed = 0;
+            while (running) {
+                long interval = heartbeatInterval;
+                long sent = System.currentTimeMillis();
+                try {
+                    heartbeatSocket.setReceiveTimeOut((int) interval);
+                    heartbeatSocket.send(HEARTBEAT_PING, 0);
+                    byte[] pong = heartbeatSocket.recv(0);
+                    if (pong != null) {
+                        missed = 0;
+                        if (!kernelAlive) {
+                            kernelAlive = true;
+                            System.out.println("Kernel heartbeat restored");
+                        }
+                    } else {
+                        
+                        heartbeatSocket.close();
+                        heartbeatSocket = createHeartbeatSocket(address);
+                        missed++;
+                        if (missed >= HEARTBEAT_MAX_MISSES && kernelAlive) {
+                            onKernelDead();
+                        }
+                    }
+                } catch (Exception e) {
+                    if (running) {
+                        System.err.println("Error on heartbeat socket: " + e.getMessage());
+                    }
+                    break;
+                }
+                long remaining = interval - (System.currentTimeMillis() - sent);
+                if (remaining > 0) {
+                    synchronized (heartbeatLock) {
+                        try {
+                            if (running) heartbeatLock.wait(remaining);
+                        } catch (InterruptedException e) {
+                            break;
+                        }
+                    }
+                }
+            }
+            try {
+                heartbeatSocket.close();
             } catch (Exception e) {
-                e.printStackTrace();
-                return "Error: " + e.getMessage();
+                System.err.println("Error closing heartbeat socket: " + e.getMessage());
             }
-        }, KERNEL_EXECUTOR);
+        }, "Kernel-Heartbeat");
+        heartbeatThread.setDaemon(true);
+        heartbeatThread.start();
+    }
+
+    private ZMQ.Socket createHeartbeatSocket(String address) {
+        ZMQ.Socket socket = context.createSocket(SocketType.REQ);
+        socket.setLinger(0);
+        socket.connect(address);
+        return socket;
+    }
+
+    private void onKernelDead() {
+        kernelAlive = false;
+        System.err.println("Kernel did not answer " + HEARTBEAT_MAX_MISSES + " heartbeats, failing pending requests");
+        failPendingRequests(new IllegalStateException("Kernel is not responding (heartbeat lost)"));
+        if (statusListener != null) {
+            statusListener.onStatusChange("dead");
+        }
+    }
+
+    private void failPendingRequests(Exception cause) {
+        for (String msgId : new ArrayList<>(pendingExecutions.keySet())) {
+            ExecutionSink sink = pendingExecutions.remove(msgId);
+            if (sink != null) {
+                sink.result.completeExceptionally(cause);
+            }
+        }
+        for (String msgId : new ArrayList<>(pendingReplies.keySet())) {
+            CompletableFuture<JSONObject> reply = pendingReplies.remove(msgId);
+            if (reply != null) {
+                reply.completeExceptionally(cause);
+            }
+        }
+    }
+
+    private static int findDelimiter(List<byte[]> frames) {
+        for (int i = 0; i < frames.size(); i++) {
+            if (Arrays.equals(DELIMITER, frames.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void processShellReply(List<byte[]> frames) {
+        try {
+            int delimiterIndex = findDelimiter(frames);
+            if (delimiterIndex < 0 || frames.size() < delimiterIndex + 6) return;
+            if (!verifySignature(frames, delimiterIndex)) {
+                System.err.println("Dropping message with invalid signature");
+                return;
+            }
+
+            JSONObject parentHeader = new JSONObject(new String(frames.get(delimiterIndex + 3), StandardCharsets.UTF_8));
+            CompletableFuture<JSONObject> reply = pendingReplies.remove(parentHeader.optString("msg_id"));
+            if (reply != null) {
+                reply.complete(new JSONObject(new String(frames.get(delimiterIndex + 5), StandardCharsets.UTF_8)));
+            }
+        } catch (Exception e) {
+            System.err.println("Error processing shell reply: " + e.getMessage());
+        }
     }
     
-    private String processIoPubMessage(ZMQ.Socket socket, String currentMsgId) {
+    private void processIoPubMessage(List<byte[]> frames) {
         try {
             
-            byte[] identity = socket.recv(0); 
-            String delimiter = socket.recvStr(); 
-            if (!"<IDS|MSG>".equals(delimiter)) return "";
+            int delimiterIndex = findDelimiter(frames);
+            if (delimiterIndex < 0 || frames.size() < delimiterIndex + 6) return;
 
-            String signature = socket.recvStr(); 
-            String headerStr = socket.recvStr(); 
-            JSONObject header = new JSONObject(headerStr);
-            String msgType = header.getString("msg_type");
-            String parentHeaderStr = socket.recvStr(); 
+            
+            String parentHeaderStr = new String(frames.get(delimiterIndex + 3), StandardCharsets.UTF_8);
             JSONObject parentHeader = new JSONObject(parentHeaderStr);
+            String parentMsgId = parentHeader.optString("msg_id");
             
             
-            if (!currentMsgId.equals(parentHeader.optString("msg_id"))) {
-                while (socket.hasReceiveMore()) { socket.recv(0); } 
-                return null;
+            ExecutionSink sink = pendingExecutions.get(parentMsgId);
+            if (sink == null) {
+                return;
+            }
+            if (!verifySignature(frames, delimiterIndex)) {
+                System.err.println("Dropping iopub message with invalid signature");
+                return;
             }
             
-            String metadataStr = socket.recvStr(); 
-            String contentStr = socket.recvStr(); 
-            JSONObject content = new JSONObject(contentStr);
+            JSONObject header = new JSONObject(new String(frames.get(delimiterIndex + 2), StandardCharsets.UTF_8));
+            String msgType = header.getString("msg_type");
+            byte[] contentBytes = frames.get(delimiterIndex + 5);
+            if ("execute_result".equals(msgType) || "display_data".equals(msgType) || "update_display_data".equals(msgType)) {
+                processDisplayData(sink, contentBytes, frames.subList(delimiterIndex + 6, frames.size()),
+                    "update_display_data".equals(msgType));
+                return;
+            }
+            JSONObject content = new JSONObject(new String(contentBytes, StandardCharsets.UTF_8));
 
             
             switch (msgType) {
                 case "stream":
-                    return content.getString("text");
-                case "execute_result":
-                case "display_data":
-                    JSONObject data = content.getJSONObject("data");
-                    if (data.has("text/plain")) return data.getString("text/plain");
-                    if (data.has("text/html")) return data.getString("text/html");
-                    return data.toString(); 
+                    sink.append(content.getString("text"));
+                    break;
                 case "error":
                     JSONArray tracebackArr = content.getJSONArray("traceback");
                     StringBuilder tracebackBuilder = new StringBuilder();
                     for (int i = 0; i < tracebackArr.length(); i++) {
                         tracebackBuilder.append(tracebackArr.getString(i).replaceAll("\u001B\\[[;\\d]*m", "")).append("\n");
                     }
-                    return tracebackBuilder.toString();
+                    sink.append(tracebackBuilder.toString());
+                    break;
+                case "execute_input":
+                    sink.started();
+                    if (content.has("execution_count")) {
+                        sink.executionCount(content.optInt("execution_count"));
+                    }
+                    break;
+                case "clear_output":
+                    sink.clearOutput(content.optBoolean("wait", false));
+                    break;
                 case "status":
                     String state = content.getString("execution_state");
+                    if ("busy".equals(state)) {
+                        sink.started();
+                    }
                     if (statusListener != null) {
                         statusListener.onStatusChange(state);
                     }
                     if ("idle".equals(state)) {
-                        return "EXECUTION_COMPLETE";
+                        pendingExecutions.remove(parentMsgId);
+                        sink.complete();
                     }
-                    return null; 
+                    break;
                 default:
-                    return null; 
+                    break; 
             }
         } catch (Exception e) {
             System.err.println("Error processing iopub message: " + e.getMessage());
-            return null; 
         }
     }
+
     
+    private void processDisplayData(ExecutionSink sink, byte[] content, List<byte[]> buffers, boolean update) throws IOException {
+        String displayId = null;
+        String plainText = null;
+        String htmlText = null;
+        String tableJson = null;
+        String imageMimeType = null;
+
+        JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            if ("transient".equals(field) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if ("display_id".equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                        displayId = reader.nextString();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                continue;
+            }
+            if (!"data".equals(field)) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String mimeType = reader.nextName();
+                if (reader.peek() != JsonToken.STRING) {
+                    reader.skipValue();
+                } else if (mimeType.startsWith("image/") && !mimeType.equals("image/svg+xml")) {
+                    
+                    if (imageMimeType == null) imageMimeType = mimeType;
+                    reader.skipValue();
+                } else if ("text/plain".equals(mimeType)) {
+                    plainText = reader.nextString();
+                } else if ("text/html".equals(mimeType)) {
+                    htmlText = reader.nextString();
+                } else if (DataFrameTableModel.TABLE_MIME_TYPE.equals(mimeType)) {
+                    tableJson = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.close();
+
+        if (imageMimeType != null) {
+            byte[] image = decodeBase64Field(content, imageMimeType);
+            if ((image == null || image.length == 0) && !buffers.isEmpty()) {
+                image = buffers.get(0);
+            }
+            if (image != null && image.length > 0) {
+                sink.appendDisplayData(imageMimeType, image, displayId, update);
+            }
+        }
+
+        if (tableJson != null) {
+            sink.appendDisplayData(DataFrameTableModel.TABLE_MIME_TYPE, tableJson.getBytes(StandardCharsets.UTF_8), displayId, update);
+        }
+
+        if (update) {
+            return;
+        }
+        if (plainText != null) sink.append(plainText);
+        else if (htmlText != null) sink.append(htmlText);
+        else if (imageMimeType == null) sink.append(new JSONObject(new String(content, StandardCharsets.UTF_8)).optJSONObject("data").toString());
+    }
+
     
-    public static Map<String, KernelSpec> discoverKernels(String envPath) {
-        Map<String, KernelSpec> kernels = new HashMap<>();
-        
+    static byte[] decodeBase64Field(byte[] json, String key) {
+        int data = memberValue(json, skipWhitespace(json, 0), "data");
+        if (data < 0 || json[data] != '{') {
+            return null;
+        }
+        int i = memberValue(json, data, key);
+        if (i < 0 || json[i] != '"') {
+            return null;
+        }
+        i++;
+
         
-        if (envPath == null || envPath.trim().isEmpty()) {
-            return kernels;
+        byte[] compact = new byte[json.length - i];
+        int length = 0;
+        while (i < json.length && json[i] != '"') {
+            if (json[i] == '\\' && i + 1 < json.length) {
+                i++;
+                if (json[i] == '/' || json[i] == '+' || json[i] == '=') {
+                    compact[length++] = json[i];
+                }
+            } else {
+                compact[length++] = json[i];
+            }
+            i++;
+        }
+        ByteBuffer decoded = Base64.getMimeDecoder().decode(ByteBuffer.wrap(compact, 0, length));
+        byte[] bytes = new byte[decoded.remaining()];
+        decoded.get(bytes);
+        return bytes;
+    }
+
+    private static int memberValue(byte[] json, int objectStart, String name) {
+        if (objectStart < 0 || objectStart >= json.length || json[objectStart] != '{') {
+            return -1;
+        }
+        byte[] target = name.getBytes(StandardCharsets.UTF_8);
+        int i = objectStart + 1;
+        while (true) {
+            i = skipWhitespace(json, i);
+            if (i >= json.length || json[i] != '"') {
+                return -1;
+            }
+            int keyEnd = stringEnd(json, i);
+            boolean match = keyEnd - i - 1 == target.length;
+            for (int j = 0; match && j < target.length; j++) {
+                match = json[i + 1 + j] == target[j];
+            }
+            i = skipWhitespace(json, keyEnd + 1);
+            if (i >= json.length || json[i] != ':') {
+                return -1;
+            }
+            i = skipWhitespace(json, i + 1);
+            if (match) {
+                return i < json.length ? i : -1;
+            }
+            i = skipWhitespace(json, skipValue(json, i));
+            if (i >= json.length || json[i] != ',') {
+                return -1;
+            }
+            i++;
         }
+    }
+
+    private static int skipValue(byte[] json, int i) {
+        if (i >= json.length) {
+            return i;
+        }
+        if (json[i] == '"') {
+            return stringEnd(json, i) + 1;
+        }
+        int depth = 0;
+        while (i < json.length) {
+            byte b = json[i];
+            if (b == '"') {
+                i = stringEnd(json, i);
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                if (depth == 0) {
+                    return i;
+                }
+                if (--depth == 0) {
+                    return i + 1;
+                }
+            } else if (b == ',' && depth == 0) {
+                return i;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static int stringEnd(byte[] json, int quote) {
+        int i = quote + 1;
+        while (i < json.length && json[i] != '"') {
+            i += json[i] == '\\' ? 2 : 1;
+        }
+        return Math.min(i, json.length);
+    }
+
+    private static int skipWhitespace(byte[] json, int i) {
+        while (i < json.length && (json[i] == ' ' || json[i] == '\n' || json[i] == '\r' || json[i] == '\t')) {
+            i++;
+        }
+        return i;
+    }
+    
+    
+    public static Map<String, KernelSpec> discoverKernels(String envPath) {
+        if (envPath == null || envPath.trim().isEmpty() || !new File(envPath, "bin/jupyter").exists()) {
+            return new HashMap<>();
+        }
+        return KernelSpecDiscovery.discover(envPath, JupyterKernelClient::discoverKernelsWithJupyter);
+    }
+
+    private static Map<String, KernelSpec> discoverKernelsWithJupyter(String envPath) {
+        Map<String, KernelSpec> kernels = new HashMap<>();
         
         try {
             
             String jupyterPath = new File(envPath, "bin/jupyter").getAbsolutePath();
 
-            
-            if (!new File(jupyterPath).exists()) {
-                
-                return kernels;
-            }
-
             ProcessBuilder pb = new ProcessBuilder(
                 jupyterPath, "kernelspec", "list", "--json"
             );
@@ -374,8 +928,10 @@ public class JupyterKernelClient {
                     JSONObject spec = kernelspecs.getJSONObject(kernelName);
                     String displayName = spec.getJSONObject("spec").getString("display_name");
                     String resourceDir = spec.getString("resource_dir");
+                    String interruptMode = spec.getJSONObject("spec").optString("interrupt_mode", "signal");
                     
                     KernelSpec kernelSpec = new KernelSpec(kernelName, displayName, resourceDir);
+                    kernelSpec.setInterruptMode(interruptMode);
                     kernels.put(kernelName, kernelSpec);
                 }
             }
@@ -604,6 +1160,14 @@ public class JupyterKernelClient {
 
             newClient.kernelProcess = process;
             newClient.waitForKernelReady();
+            
+            
+            KERNEL_WATCHDOG.execute(() -> {
+                KernelSpec spec = discoverKernels(envPath).get(kernelName);
+                if (spec != null) {
+                    newClient.setInterruptMode(spec.getInterruptMode());
+                }
+            });
             return newClient;
 
         } catch (Exception e) {
@@ -619,53 +1183,20 @@ public class JupyterKernelClient {
         String msgId = UUID.randomUUID().toString();
 
         
-        JSONObject header = new JSONObject()
-            .put("msg_id", msgId)
-            .put("username", "user")
-            .put("session", UUID.randomUUID().toString())
-            .put("msg_type", "kernel_info_request")
-            .put("version", "5.0");
-        String headerStr = header.toString();
-        String parentHeaderStr = "{}";
-        String metadataStr = "{}";
-        String contentStr = "{}";
-        String signature = createSignature(headerStr, parentHeaderStr, metadataStr, contentStr);
-
-        
-        shellSocket.sendMore("<IDS|MSG>".getBytes(StandardCharsets.UTF_8));
-        shellSocket.sendMore(signature.getBytes(StandardCharsets.UTF_8));
-        shellSocket.sendMore(headerStr.getBytes(StandardCharsets.UTF_8));
-        shellSocket.sendMore(parentHeaderStr.getBytes(StandardCharsets.UTF_8));
-        shellSocket.sendMore(metadataStr.getBytes(StandardCharsets.UTF_8));
-        shellSocket.send(contentStr.getBytes(StandardCharsets.UTF_8));
-
-        
-        ZMQ.Poller poller = context.createPoller(1);
-        poller.register(shellSocket, ZMQ.Poller.POLLIN);
-        long startTime = System.currentTimeMillis();
-        while (System.currentTimeMillis() - startTime < 5000) { 
-            if (poller.poll(100) > 0 && poller.pollin(0)) {
-                
-                List<byte[]> reply = new ArrayList<>();
-                while (true) {
-                    reply.add(shellSocket.recv(0));
-                    if (!shellSocket.hasReceiveMore()) break;
-                }
-                
-                JSONObject parentHeaderReply = new JSONObject(new String(reply.get(3), StandardCharsets.UTF_8));
-                if (msgId.equals(parentHeaderReply.optString("msg_id"))) {
-                    System.out.println("Kernel is ready (received kernel_info_reply).");
-                    return; 
-                }
-            }
+        try {
+            sendShellRequest(msgId, "kernel_info_request", new JSONObject()).get(5000, TimeUnit.MILLISECONDS);
+            System.out.println("Kernel is ready (received kernel_info_reply).");
+        } catch (TimeoutException e) {
+            pendingReplies.remove(msgId);
+            throw new Exception("Kernel did not become ready within the timeout period.");
         }
-        throw new Exception("Kernel did not become ready within the timeout period.");
     }
     
     public static class KernelSpec {
         private String name;
         private String displayName;
         private String resourceDir;
+        private String interruptMode = "signal";
         
         public KernelSpec(String name, String displayName, String resourceDir) {
             this.name = name;
@@ -685,6 +1216,14 @@ public class JupyterKernelClient {
             return resourceDir;
         }
         
+        public String getInterruptMode() {
+            return interruptMode;
+        }
+        
+        void setInterruptMode(String interruptMode) {
+            this.interruptMode = interruptMode;
+        }
+        
         @Override
         public String toString() {
             return displayName + " (" + name + ")";
@@ -697,6 +1236,33 @@ public class JupyterKernelClient {
         System.out.println("Closing JupyterKernelClient...");
         long startTime = System.currentTimeMillis();
 
+        if (kernelAlive) {
+            String shutdownId = UUID.randomUUID().toString();
+            try {
+                sendRequest(shutdownId, "shutdown_request", new JSONObject().put("restart", false), true)
+                    .get(1000, TimeUnit.MILLISECONDS);
+                System.out.println("Kernel acknowledged shutdown_request.");
+            } catch (Exception e) {
+                pendingReplies.remove(shutdownId);
+                System.out.println("No shutdown_reply from kernel: " + e.getMessage());
+            }
+        }
+
+        running = false;
+        synchronized (heartbeatLock) {
+            heartbeatLock.notifyAll();
+        }
+        for (Thread worker : new Thread[] { iopubReader, shellWorker, heartbeatThread }) {
+            if (worker != null) {
+                try {
+                    worker.join(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        failPendingRequests(new IllegalStateException("Kernel client closed"));
+
         
         try {
             if (shellSocket != null) {
@@ -709,6 +1275,14 @@ public class JupyterKernelClient {
                 iopubSocket.close();
                 System.out.println("IOPub socket closed.");
             }
+            if (controlSocket != null) {
+                controlSocket.setLinger(0);
+                controlSocket.close();
+            }
+            synchronized (wakeupSender) {
+                wakeupSender.close();
+            }
+            wakeupReceiver.close();
             if (context != null) {
                 context.close(); 
                 System.out.println("ZMQ context closed.");
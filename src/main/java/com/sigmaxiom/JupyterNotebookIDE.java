@@ -9,10 +9,13 @@ import java.awt.event.*;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.prefs.Preferences;
 
 import javax.swing.filechooser.FileFilter;
 import javax.swing.text.*;
+import javax.swing.text.html.HTMLDocument;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeCellRenderer;
 import javax.swing.tree.TreePath;
@@ -84,11 +87,42 @@ public class JupyterNotebookIDE extends JFrame implements KernelStatusListener {
     private String selectedEnvPath;
     private String futharkTranspilerPath;
     private JPanel currentSideBar;
+    private KernelPool kernelPool;
+    private static final String PREF_KERNEL_POOL_SIZE = "kernel_pool_size";
+    private static final String PREF_KERNEL_POOL_TTL_MINUTES = "kernel_pool_ttl_minutes";
+    private LintService lintService;
+    private static final String PREF_LINT_WORKERS = "lint_workers";
+    private FutharkCheckService futharkCheckService;
+    private String futharkCheckEnvPath;
 
     public String getSelectedEnvPath() {
         return this.selectedEnvPath;
     }
 
+    public synchronized LintService getLintService() {
+        if (lintService != null && !Objects.equals(lintService.getEnvPath(), selectedEnvPath)) {
+            lintService.shutdown();
+            lintService = null;
+        }
+        if (lintService == null) {
+            Preferences prefs = Preferences.userNodeForPackage(JupyterNotebookIDE.class);
+            int defaultWorkers = Math.min(4, Runtime.getRuntime().availableProcessors());
+            lintService = new LintService(selectedEnvPath, prefs.getInt(PREF_LINT_WORKERS, defaultWorkers));
+        }
+        return lintService;
+    }
+
+    public synchronized FutharkCheckService getFutharkCheckService() {
+        if (futharkCheckService == null || !Objects.equals(futharkCheckEnvPath, selectedEnvPath)) {
+            if (futharkCheckService != null) {
+                futharkCheckService.shutdown();
+            }
+            futharkCheckService = new FutharkCheckService(selectedEnvPath);
+            futharkCheckEnvPath = selectedEnvPath;
+        }
+        return futharkCheckService;
+    }
+
     public String getFutharkTranspilerPath() {
         return this.futharkTranspilerPath;
     }
@@ -301,6 +335,11 @@ public class JupyterNotebookIDE extends JFrame implements KernelStatusListener {
         this.selectedEnvPath = kernelDialog.getSelectedEnvPath();
         this.futharkTranspilerPath = locateFutharkTranspiler();
 
+        Preferences prefs = Preferences.userNodeForPackage(JupyterNotebookIDE.class);
+        kernelPool = new KernelPool(this::startPooledKernel,
+            prefs.getInt(PREF_KERNEL_POOL_SIZE, 1),
+            TimeUnit.MINUTES.toMillis(prefs.getInt(PREF_KERNEL_POOL_TTL_MINUTES, 10)));
+
         try {
             JupyterKernelClient sharedKernel;
             
@@ -332,6 +371,7 @@ public class JupyterNotebookIDE extends JFrame implements KernelStatusListener {
             sharedKernel.executeCode("1+1").thenAccept(result -> {
                 System.out.println("Shared kernel warmed up: " + result);
             });
+            kernelPool.warm("python3");
             
             statusLabel.setText("Connected to " + selectedKernel + " kernel");
             kernelStatus.setText("Kernel: Idle");
@@ -390,6 +430,13 @@ public class JupyterNotebookIDE extends JFrame implements KernelStatusListener {
         });
     }
     
+    private JupyterKernelClient startPooledKernel(String kernelName) throws Exception {
+        if (usingDirectMethod && "python3".equals(kernelName)) {
+            return JupyterKernelClient.startPythonKernelDirectly(selectedEnvPath);
+        }
+        return JupyterKernelClient.startKernel(kernelName, selectedEnvPath);
+    }
+
     private String findKernelSpecName(String displayName) {
         
         Map<String, JupyterKernelClient.KernelSpec> kernels = JupyterKernelClient.discoverKernels(this.selectedEnvPath);
@@ -407,8 +454,14 @@ public class JupyterNotebookIDE extends JFrame implements KernelStatusListener {
     
     private void shutdownApplication(boolean showProgressDialog) {
         System.out.println("Initiating application shutdown...");
+        List<CompletableFuture<Void>> closing = new ArrayList<>();
+        for (int i = 0; i < tabbedPane.getTabCount(); i++) {
+            if (tabbedPane.getComponentAt(i) instanceof NotebookPanel) {
+                closing.add(((NotebookPanel) tabbedPane.getComponentAt(i)).closeNotebook());
+            }
+        }
         
-        ShutdownWorker worker = new ShutdownWorker();
+        ShutdownWorker worker = new ShutdownWorker(closing);
     
         if (showProgressDialog) {
             
@@ -773,6 +826,7 @@ public class JupyterNotebookIDE extends JFrame implements KernelStatusListener {
             if (comp instanceof NotebookPanel) {
                 NotebookPanel panel = (NotebookPanel) comp;
                 String kernelId = notebookToKernelMap.get(panel);
+                panel.closeNotebook();
 
                 
                 openNotebooks.remove(title);
@@ -833,6 +887,10 @@ public class JupyterNotebookIDE extends JFrame implements KernelStatusListener {
         }
     }
 
+    public void showStatus(String message) {
+        statusLabel.setText(message);
+    }
+
     public void updateTabTitle(NotebookPanel panel, String title) {
         int index = tabbedPane.indexOfComponent(panel);
         if (index >= 0) {
@@ -1107,6 +1165,7 @@ public class JupyterNotebookIDE extends JFrame implements KernelStatusListener {
     private Component[] getCodeCellsFromNotebook(NotebookPanel notebook) {
         
         try {
+            notebook.realizeAllCells();
             java.lang.reflect.Field field = NotebookPanel.class.getDeclaredField("cellsContainer");
             field.setAccessible(true);
             JPanel cellsContainer = (JPanel) field.get(notebook);
@@ -1271,13 +1330,10 @@ public class JupyterNotebookIDE extends JFrame implements KernelStatusListener {
     
     private void openNotebookFile(File file) {
         try {
-            String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
-            JSONObject notebook = new JSONObject(content);
-            
             JupyterKernelClient client = kernelClients.get(SHARED_KERNEL_ID);
             NotebookPanel notebookPanel = new NotebookPanel(client, file.getParentFile());
         
-            notebookPanel.loadFromJson(notebook);
+            notebookPanel.loadFromFile(file);
             
             
             notebookPanel.setSavedFile(file);
@@ -1341,50 +1397,63 @@ public class JupyterNotebookIDE extends JFrame implements KernelStatusListener {
         }
 
         String oldKernelId = notebookToKernelMap.get(currentNotebook);
+        statusLabel.setText("Starting " + kernelName + " kernel...");
 
-        try {
-            
-            JupyterKernelClient newKernelClient = JupyterKernelClient.startKernel(kernelName, this.selectedEnvPath);
-            newKernelClient.setStatusListener(JupyterNotebookIDE.this);
-            
-            
-            kernelCounter++;
-            String newKernelId = "Kernel " + kernelCounter + " (" + kernelName + ")";
-            kernelClients.put(newKernelId, newKernelClient);
+        new SwingWorker<JupyterKernelClient, Void>() {
+            @Override
+            protected JupyterKernelClient doInBackground() throws Exception {
+                return kernelPool.acquire(kernelName);
+            }
 
-            
-            currentNotebook.setKernelClient(newKernelClient);
-            notebookToKernelMap.put(currentNotebook, newKernelId);
-            
-            
-            int tabIndex = tabbedPane.indexOfComponent(currentNotebook);
-            if (tabIndex != -1) {
-                String oldTitle = tabbedPane.getTitleAt(tabIndex);
-                
-                if (oldTitle.contains(" (Kernel")) {
-                    oldTitle = oldTitle.substring(0, oldTitle.indexOf(" (Kernel"));
+            @Override
+            protected void done() {
+                try {
+                    switchNotebookKernel(currentNotebook, oldKernelId, kernelName, get());
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    statusLabel.setText("Failed to change kernel.");
+                    JOptionPane.showMessageDialog(JupyterNotebookIDE.this,
+                        "Error changing kernel: " + e.getMessage(),
+                        "Kernel Error",
+                        JOptionPane.ERROR_MESSAGE);
                 }
-                tabbedPane.setTitleAt(tabIndex, oldTitle + " (" + newKernelId + ")");
             }
+        }.execute();
+    }
 
-            statusLabel.setText("Switched to " + newKernelId);
-            updateStatusForCurrentTab();
+    private void switchNotebookKernel(NotebookPanel currentNotebook, String oldKernelId, String kernelName, JupyterKernelClient newKernelClient) {
+        newKernelClient.setStatusListener(JupyterNotebookIDE.this);
+        
+        
+        kernelCounter++;
+        String newKernelId = "Kernel " + kernelCounter + " (" + kernelName + ")";
+        kernelClients.put(newKernelId, newKernelClient);
 
+        
+        currentNotebook.setKernelClient(newKernelClient);
+        notebookToKernelMap.put(currentNotebook, newKernelId);
+        
+        
+        int tabIndex = tabbedPane.indexOfComponent(currentNotebook);
+        if (tabIndex != -1) {
+            String oldTitle = tabbedPane.getTitleAt(tabIndex);
             
-            if (oldKernelId != null && !notebookToKernelMap.containsValue(oldKernelId)) {
-                JupyterKernelClient oldClient = kernelClients.remove(oldKernelId);
-                if (oldClient != null) {
-                    new Thread(oldClient::close).start();
-                    System.out.println("Cleaned up unused kernel: " + oldKernelId);
-                }
+            if (oldTitle.contains(" (Kernel")) {
+                oldTitle = oldTitle.substring(0, oldTitle.indexOf(" (Kernel"));
             }
+            tabbedPane.setTitleAt(tabIndex, oldTitle + " (" + newKernelId + ")");
+        }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(this,
-                "Error changing kernel: " + e.getMessage(),
-                "Kernel Error",
-                JOptionPane.ERROR_MESSAGE);
+        statusLabel.setText("Switched to " + newKernelId);
+        updateStatusForCurrentTab();
+
+        
+        if (oldKernelId != null && !notebookToKernelMap.containsValue(oldKernelId)) {
+            JupyterKernelClient oldClient = kernelClients.remove(oldKernelId);
+            if (oldClient != null) {
+                new Thread(oldClient::close).start();
+                System.out.println("Cleaned up unused kernel: " + oldKernelId);
+            }
         }
     }
 
@@ -1470,11 +1539,14 @@ public class JupyterNotebookIDE extends JFrame implements KernelStatusListener {
         runCellItem.addActionListener(e -> runCurrentCell());
         JMenuItem runAllItem = new JMenuItem("Run All");
         runAllItem.addActionListener(e -> runAllCells());
+        JMenuItem runAllParallelItem = new JMenuItem("Run All (parallel)");
+        runAllParallelItem.addActionListener(e -> runAllCellsParallel());
         JMenuItem addCellAboveItem = new JMenuItem("Add Cell Above");
         JMenuItem addCellBelowItem = new JMenuItem("Add Cell Below");
         JMenuItem deleteCellItem = new JMenuItem("Delete Cell");
         cellMenu.add(runCellItem);
         cellMenu.add(runAllItem);
+        cellMenu.add(runAllParallelItem);
         cellMenu.addSeparator();
         cellMenu.add(addCellAboveItem);
         cellMenu.add(addCellBelowItem);
@@ -1694,6 +1766,8 @@ public class JupyterNotebookIDE extends JFrame implements KernelStatusListener {
                 CodeCell cell = (CodeCell) component;
                 cell.clearOutput();
                 clearedAny = true;
+            } else if (component instanceof CellPlaceholder) {
+                clearedAny = ((CellPlaceholder) component).clearOutputs() || clearedAny;
             } else if (component instanceof Container) {
                 
                 clearedAny = clearOutputsInContainer((Container) component) || clearedAny;
@@ -1721,22 +1795,23 @@ public class JupyterNotebookIDE extends JFrame implements KernelStatusListener {
             }
             
             
-            boolean success = client.interruptKernel();
-            
-            if (success) {
-                
-                Timer timer = new Timer(1000, e -> {
-                    statusLabel.setText("Kernel interrupted");
-                    kernelStatus.setText("Kernel: Idle");
-                });
-                timer.setRepeats(false);
-                timer.start();
-            } else {
-                JOptionPane.showMessageDialog(this,
-                    "Cannot interrupt kernel. You may need to restart the kernel.",
-                    "Interrupt Failed",
-                    JOptionPane.WARNING_MESSAGE);
-            }
+            client.interruptKernel().thenAccept(success -> SwingUtilities.invokeLater(() -> {
+                if (success) {
+                    
+                    Timer timer = new Timer(1000, e -> {
+                        statusLabel.setText("Kernel interrupted");
+                        kernelStatus.setText("Kernel: Idle");
+                    });
+                    timer.setRepeats(false);
+                    timer.start();
+                } else {
+                    statusLabel.setText("Interrupt failed");
+                    JOptionPane.showMessageDialog(this,
+                        "Cannot interrupt kernel. You may need to restart the kernel.",
+                        "Interrupt Failed",
+                        JOptionPane.WARNING_MESSAGE);
+                }
+            }));
         } else {
             JOptionPane.showMessageDialog(this,
                 "No kernel running to interrupt",
@@ -1831,6 +1906,13 @@ public class JupyterNotebookIDE extends JFrame implements KernelStatusListener {
         }
     }
 
+    private void runAllCellsParallel() {
+        NotebookPanel currentNotebook = getCurrentNotebook();
+        if (currentNotebook != null) {
+            currentNotebook.runAllCellsParallel();
+        }
+    }
+
     public NotebookPanel getCurrentNotebook() {
         Component selectedComponent = tabbedPane.getSelectedComponent();
         if (selectedComponent instanceof NotebookPanel) {
@@ -1999,12 +2081,9 @@ public class JupyterNotebookIDE extends JFrame implements KernelStatusListener {
             File file = fileChooser.getSelectedFile();
             try {
                 
-                String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
-                JSONObject notebook = new JSONObject(content);
-                
                 JupyterKernelClient client = kernelClients.get(SHARED_KERNEL_ID);
                 NotebookPanel notebookPanel = new NotebookPanel(client, file.getParentFile());
-                notebookPanel.loadFromJson(notebook);
+                notebookPanel.loadFromFile(file);
                 
                 
                 notebookPanel.setSavedFile(file);
@@ -2112,13 +2191,7 @@ public class JupyterNotebookIDE extends JFrame implements KernelStatusListener {
         SwingWorker<JupyterKernelClient, Void> worker = new SwingWorker<JupyterKernelClient, Void>() {
             @Override
             protected JupyterKernelClient doInBackground() throws Exception {
-                
-                if (usingDirectMethod) {
-                    
-                    return JupyterKernelClient.startPythonKernelDirectly(selectedEnvPath); 
-                } else {
-                    return JupyterKernelClient.startKernel("python3", selectedEnvPath);
-                }
+                return kernelPool.acquire("python3");
             }
 
             @Override
@@ -2448,13 +2521,48 @@ public class JupyterNotebookIDE extends JFrame implements KernelStatusListener {
             ide.createNewNotebook(SHARED_KERNEL_ID); 
             SwingUtilities.updateComponentTreeUI(ide);
             ide.setVisible(true);
+            ide.recoverAutosavedNotebooks();
         });
     }
+
+    private void recoverAutosavedNotebooks() {
+        for (File journalFile : NotebookJournal.findOrphans()) {
+            NotebookJournal journal;
+            try {
+                journal = NotebookJournal.adopt(journalFile);
+            } catch (IOException e) {
+                System.err.println("Cannot open autosave journal " + journalFile.getName() + ": " + e.getMessage());
+                continue;
+            }
+            File notebookFile = journal.getNotebookFile();
+            String name = notebookFile != null ? notebookFile.getName() : "an untitled notebook";
+            int option = JOptionPane.showConfirmDialog(this,
+                "Unsaved changes to " + name + " were found from a previous session.\nDo you want to recover them?",
+                "Recover Notebook",
+                JOptionPane.YES_NO_OPTION);
+            if (option != JOptionPane.YES_OPTION) {
+                journal.delete();
+                continue;
+            }
+            
+            JupyterKernelClient client = kernelClients.get(SHARED_KERNEL_ID);
+            NotebookPanel notebookPanel = new NotebookPanel(client, notebookFile != null ? notebookFile.getParentFile() : currentDirectory);
+            notebookPanel.recoverFromJournal(journal);
+            String title = notebookFile != null ? notebookFile.getName() : "Recovered-" + (openNotebooks.size() + 1) + ".ipynb";
+            tabbedPane.addTab(title, notebookPanel);
+            tabbedPane.setSelectedComponent(notebookPanel);
+            openNotebooks.put(title, notebookPanel);
+            notebookToKernelMap.put(notebookPanel, SHARED_KERNEL_ID);
+            statusLabel.setText("Recovered notebook: " + title);
+        }
+    }
     private class ShutdownWorker extends SwingWorker<Void, String> {
         private JDialog progressDialog;
         private JLabel progressLabel;
+        private final List<CompletableFuture<Void>> closing;
 
-        public ShutdownWorker() {
+        public ShutdownWorker(List<CompletableFuture<Void>> closing) {
+            this.closing = closing;
             
             progressDialog = new JDialog(JupyterNotebookIDE.this, "Shutting Down", true); 
             progressLabel = new JLabel("Starting shutdown...", JLabel.CENTER);
@@ -2478,6 +2586,30 @@ public class JupyterNotebookIDE extends JFrame implements KernelStatusListener {
         protected Void doInBackground() throws Exception {
             publish("Initiating cleanup...");
 
+            if (!closing.isEmpty()) {
+                publish("Saving notebooks...");
+                try {
+                    CompletableFuture.allOf(closing.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    System.err.println("Timed out waiting for autosave: " + e.getMessage());
+                }
+            }
+
+            if (kernelPool != null) {
+                publish("Closing pooled kernels...");
+                kernelPool.shutdown();
+            }
+
+            synchronized (JupyterNotebookIDE.this) {
+                if (lintService != null) {
+                    publish("Stopping lint workers...");
+                    lintService.shutdown();
+                }
+                if (futharkCheckService != null) {
+                    futharkCheckService.shutdown();
+                }
+            }
+
             
             if (!kernelClients.isEmpty()) {
                 publish("Closing " + kernelClients.size() + " kernel(s)...");
@@ -2918,18 +3050,44 @@ public class JupyterNotebookIDE extends JFrame implements KernelStatusListener {
 
 
 class NotebookPanel extends JPanel {
+    private static final long REALIZE_BUDGET_NANOS = 8000000L;
+    private static final int LOAD_BATCH_SIZE = 64;
+    private static final long LOAD_FLUSH_MILLIS = 50;
+    private static final int DEFAULT_CHROME_HEIGHT = 80;
+    private static final ExecutorService LOAD_POOL = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Notebook-Load-Thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private JPanel cellsContainer;
+    private JScrollPane notebookScrollPane;
     private JupyterKernelClient kernelClient;
     private File savedFile;
     private File currentDirectory;
-    private Queue<CodeCell> errorCheckQueue = new ConcurrentLinkedQueue<>();
-    private boolean isErrorCheckingInProgress = false;
+    private boolean errorCheckingEnabled = true;
+    private OutputSidecar outputSidecar;
+    private int pendingPlaceholders = 0;
+    private volatile boolean loading = false;
+    private long loadGeneration = 0;
+    private final Map<String, Integer> measuredChrome = new HashMap<>();
+    private final Timer realizeTimer = new Timer(16, e -> realizeNearViewport());
+    private static final long JOURNAL_REWRITE_BYTES = 8L * 1024 * 1024;
+    private volatile NotebookJournal journal;
+    private final Map<NotebookCell, Integer> journaledVersions = new WeakHashMap<>();
+    private List<String> journaledOrder = new ArrayList<>();
+    private boolean uncompactedChanges = false;
+    private boolean autosavePending = false;
+    private long lastCompaction = System.currentTimeMillis();
+    private final Timer autosaveTimer = new Timer((int) NotebookJournal.getAutosaveIntervalMillis(), e -> autosave());
+    private final DiagnosticsScheduler<CodeCell> diagnosticsScheduler =
+        new DiagnosticsScheduler<>(750, this::diagnosticsBudget, CodeCell::performErrorCheck);
 
     public NotebookPanel(JupyterKernelClient kernelClient) {
         this(kernelClient, new File(System.getProperty("user.home")));
     }
     public void setErrorCheckingEnabled(boolean enabled) {
-        
+        errorCheckingEnabled = enabled;
         for (Component component : cellsContainer.getComponents()) {
             if (component instanceof CodeCell) {
                 ((CodeCell) component).setErrorCheckingEnabled(enabled);
@@ -2937,29 +3095,24 @@ class NotebookPanel extends JPanel {
         }
     }
     
+    public void scheduleErrorCheck(CodeCell cell) {
+        diagnosticsScheduler.schedule(cell);
+    }
+
     public void queueErrorCheck(CodeCell cell) {
-        System.out.println("Queueing error check for cell");
-        errorCheckQueue.add(cell);
-        processErrorCheckQueue();
+        diagnosticsScheduler.checkNow(cell);
     }
 
-    private void processErrorCheckQueue() {
-        if (isErrorCheckingInProgress || errorCheckQueue.isEmpty()) {
-            return;
+    public void cancelErrorCheck(CodeCell cell) {
+        diagnosticsScheduler.cancel(cell);
+    }
+
+    private int diagnosticsBudget() {
+        Window window = SwingUtilities.getWindowAncestor(this);
+        if (window instanceof JupyterNotebookIDE) {
+            return ((JupyterNotebookIDE) window).getLintService().getWorkerCount();
         }
-        
-        isErrorCheckingInProgress = true;
-        CodeCell cell = errorCheckQueue.poll();
-        
-        cell.performSequentialErrorCheck(() -> {
-            
-            Timer delayTimer = new Timer(1000, e -> {
-                isErrorCheckingInProgress = false;
-                processErrorCheckQueue();
-            });
-            delayTimer.setRepeats(false);
-            delayTimer.start();
-        });
+        return 1;
     }
 
     public NotebookPanel(JupyterKernelClient kernelClient, File currentDirectory) {
@@ -2974,6 +3127,13 @@ class NotebookPanel extends JPanel {
         JScrollPane scrollPane = new JScrollPane(cellsContainer);
         scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
         scrollPane.setBackground(new Color(13, 13, 35));
+        notebookScrollPane = scrollPane;
+        scrollPane.getViewport().addChangeListener(e -> scheduleRealize());
+        addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0 && isShowing()) {
+                scheduleRealize();
+            }
+        });
         
         scrollPane.getVerticalScrollBar().setUnitIncrement(16);  
         scrollPane.getVerticalScrollBar().setBlockIncrement(160); 
@@ -2999,6 +3159,8 @@ class NotebookPanel extends JPanel {
         add(scrollPane, BorderLayout.CENTER);
         
         addCodeCell();
+        markJournaled();
+        autosaveTimer.start();
     }
     
     public void exportWithWrappers() {
@@ -3042,110 +3204,83 @@ class NotebookPanel extends JPanel {
     private void exportToFileWithWrappers(File file) {
         try {
             
-            JSONObject notebook = new JSONObject();
-            
-            
             JSONObject metadata = new JSONObject();
             metadata.put("kernelspec", new JSONObject()
                 .put("display_name", "Python 3")
                 .put("language", "python")
                 .put("name", "python3"));
-            notebook.put("metadata", metadata);
             
             
             ImportTracker importTracker = new ImportTracker();
             
             
-            JSONArray cells = new JSONArray();
-            Component[] components = cellsContainer.getComponents();
-            
-            
-            JSONObject initCell = new JSONObject();
-            initCell.put("cell_type", "code");
-            initCell.put("execution_count", (Object)null);
-            
-            
-            String initCode = "import os\n" +
-                            "import sys\n" +
-                            "\n" +
-                            "# Set working directory to the notebook's directory\n" +
-                            "notebook_dir = os.path.dirname(os.path.abspath('__file__')) if '__file__' in globals() else os.getcwd()\n" +
-                            "os.chdir(notebook_dir)\n" +
-                            "print(f\"Working directory set to: {notebook_dir}\")\n";
-            
-            JSONArray initSourceArray = new JSONArray();
-            for (String line : initCode.split("\n")) {
-                initSourceArray.put(line + "\n");
-            }
-            initCell.put("source", initSourceArray);
-            initCell.put("outputs", new JSONArray());
-            
-            
-            JSONObject initMetadata = new JSONObject();
-            initMetadata.put("tags", new JSONArray().put("auto-generated").put("initialization"));
-            initCell.put("metadata", initMetadata);
-            
-            cells.put(initCell);
-            
-            
-            for (Component component : components) {
-                if (component instanceof CodeCell) {
-                    CodeCell cell = (CodeCell) component;
-                    
-                    
-                    String wrappedCode = getWrappedCodeWithImportTracking(cell, importTracker);
-                    
-                    
-                    JSONObject cellObj = new JSONObject();
-                    cellObj.put("cell_type", "code");
-                    cellObj.put("execution_count", (Object)null);
-                    
-                    
-                    JSONObject cellMetadata = new JSONObject();
-                    cellMetadata.put("language", cell.selectedLanguage);
-                    if (!cell.customOutputFilename.isEmpty()) {
-                        cellMetadata.put("custom_output_filename", cell.customOutputFilename);
-                    }
-                    cellObj.put("metadata", cellMetadata);
-                    
-                    
-                    JSONArray sourceArray = new JSONArray();
-                    for (String line : wrappedCode.split("\n")) {
-                        sourceArray.put(line + "\n");
-                    }
-                    cellObj.put("source", sourceArray);
-                    
-                    
-                    cellObj.put("outputs", new JSONArray());
-                    
-                    cells.put(cellObj);
-                    
-                } else if (component instanceof MarkdownCell) {
-                    
-                    MarkdownCell cell = (MarkdownCell) component;
-                    JSONObject cellObj = new JSONObject();
-                    cellObj.put("cell_type", "markdown");
-                    
-                    String source = cell.getMarkdownText();
-                    JSONArray sourceArray = new JSONArray();
-                    for (String line : source.split("\n")) {
-                        sourceArray.put(line + "\n");
+            realizeAllCells();
+            try (NotebookCodec.Writer cells = NotebookCodec.write(file.toPath(), metadata)) {
+                Component[] components = cellsContainer.getComponents();
+                
+                
+                JSONObject initCell = new JSONObject();
+                initCell.put("cell_type", "code");
+                initCell.put("execution_count", (Object)null);
+                
+                
+                String initCode = "import os\n" +
+                                "import sys\n" +
+                                "\n" +
+                                "# Set working directory to the notebook's directory\n" +
+                                "notebook_dir = os.path.dirname(os.path.abspath('__file__')) if '__file__' in globals() else os.getcwd()\n" +
+                                "os.chdir(notebook_dir)\n" +
+                                "print(f\"Working directory set to: {notebook_dir}\")\n";
+                
+                initCell.put("source", NotebookCodec.splitMultiline(initCode));
+                initCell.put("outputs", new JSONArray());
+                
+                
+                JSONObject initMetadata = new JSONObject();
+                initMetadata.put("tags", new JSONArray().put("auto-generated").put("initialization"));
+                initCell.put("metadata", initMetadata);
+                
+                cells.writeCell(initCell);
+                
+                
+                for (Component component : components) {
+                    if (component instanceof CodeCell) {
+                        CodeCell cell = (CodeCell) component;
+                        
+                        
+                        String wrappedCode = getWrappedCodeWithImportTracking(cell, importTracker);
+                        
+                        
+                        JSONObject cellObj = new JSONObject();
+                        cellObj.put("cell_type", "code");
+                        cellObj.put("execution_count", (Object)null);
+                        
+                        
+                        JSONObject cellMetadata = new JSONObject();
+                        cellMetadata.put("language", cell.selectedLanguage);
+                        if (!cell.customOutputFilename.isEmpty()) {
+                            cellMetadata.put("custom_output_filename", cell.customOutputFilename);
+                        }
+                        cellObj.put("metadata", cellMetadata);
+                        
+                        
+                        cellObj.put("source", NotebookCodec.splitMultiline(wrappedCode));
+                        
+                        
+                        cellObj.put("outputs", new JSONArray());
+                        
+                        cells.writeCell(cellObj);
+                        
+                    } else if (component instanceof MarkdownCell) {
+                        
+                        MarkdownCell cell = (MarkdownCell) component;
+                        cells.writeCell(cell.snapshotFragment(false).apply(null));
                     }
-                    cellObj.put("source", sourceArray);
-                    
-                    cells.put(cellObj);
                 }
+                
+                cells.finish();
             }
             
-            notebook.put("cells", cells);
-            
-            
-            notebook.put("nbformat", 4);
-            notebook.put("nbformat_minor", 5);
-            
-            
-            Files.write(file.toPath(), notebook.toString(2).getBytes(StandardCharsets.UTF_8));
-            
             JOptionPane.showMessageDialog(this, 
                 "Notebook exported successfully with code wrappers to:\n" + file.getAbsolutePath(), 
                 "Export Successful", 
@@ -3688,7 +3823,7 @@ class NotebookPanel extends JPanel {
 
     
     public void runAllCellsSequentially() {
-        
+        realizeAllCells();
         java.util.List<NotebookCell> cells = new java.util.ArrayList<>();
         
         
@@ -3699,42 +3834,139 @@ class NotebookPanel extends JPanel {
         }
         
         
-        if (!cells.isEmpty()) {
-            processNextCell(cells, 0);
+        for (NotebookCell cell : cells) {
+            if (cell instanceof CodeCell) {
+                ((CodeCell) cell).executeWithCallback(null);
+            } else {
+                cell.execute();
+            }
+        }
+    }
+    
+    public void runAllCellsParallel() {
+        realizeAllCells();
+        java.util.List<NotebookCell> cells = new java.util.ArrayList<>();
+        for (Component component : cellsContainer.getComponents()) {
+            if (component instanceof NotebookCell) {
+                cells.add((NotebookCell) component);
+            }
+        }
+
+        CellDependencyGraph graph = new CellDependencyGraph();
+        for (NotebookCell cell : cells) {
+            if (cell instanceof CodeCell) {
+                CodeCell codeCell = (CodeCell) cell;
+                graph.addCell(codeCell.selectedLanguage, codeCell.customOutputFilename, codeCell.getCodeText());
+            } else {
+                graph.addCell(null, null, null);
+            }
+        }
+        new ParallelRun(cells, graph, findEnvPath()).start();
+    }
+
+    private String findEnvPath() {
+        Window window = SwingUtilities.getWindowAncestor(this);
+        if (window instanceof JupyterNotebookIDE) {
+            return ((JupyterNotebookIDE) window).getSelectedEnvPath();
         }
+        return null;
     }
 
     
-    private void processNextCell(java.util.List<NotebookCell> cells, int index) {
-        if (index >= cells.size()) {
-            return; 
+    private static class ParallelRun {
+        private final java.util.List<NotebookCell> cells;
+        private final CellDependencyGraph graph;
+        private final String envPath;
+        private final ExecutorService buildPool;
+        private final boolean[] buildStarted;
+        private final String[] buildOutputs;
+        private final boolean[] attachStarted;
+        private final boolean[] submitted;
+        private int nextInOrder = 0;
+
+        ParallelRun(java.util.List<NotebookCell> cells, CellDependencyGraph graph, String envPath) {
+            this.cells = cells;
+            this.graph = graph;
+            this.envPath = envPath;
+            this.buildStarted = new boolean[cells.size()];
+            this.buildOutputs = new String[cells.size()];
+            this.attachStarted = new boolean[cells.size()];
+            this.submitted = new boolean[cells.size()];
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+            this.buildPool = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "Parallel-Build-Thread");
+                t.setDaemon(true);
+                return t;
+            });
         }
+
+        void start() {
+            advance();
+        }
+
         
-        NotebookCell cell = cells.get(index);
-        
-        if (cell instanceof CodeCell) {
-            
-            ((CodeCell) cell).executeWithCallback(() -> {
-                
-                javax.swing.Timer timer = new javax.swing.Timer(500, e -> {
-                    processNextCell(cells, index + 1);
-                });
-                timer.setRepeats(false);
-                timer.start();
-            });
-        } else {
-            
-            cell.execute();
-            
+        private void advance() {
+            for (int i = 0; i < cells.size(); i++) {
+                if (!graph.isCompiled(i)) {
+                    continue;
+                }
+                final int index = i;
+                CodeCell cell = (CodeCell) cells.get(i);
+                if (!buildStarted[i] && allDone(graph.getBuildDependencies(i), submitted)) {
+                    buildStarted[i] = true;
+                    cell.executeBuild(envPath, buildPool, output -> {
+                        buildOutputs[index] = output;
+                        advance();
+                    });
+                }
+                if (buildOutputs[i] != null && !attachStarted[i] && allDone(graph.getDependencies(i), submitted)) {
+                    attachStarted[i] = true;
+                    cell.attachBuild(buildOutputs[i], () -> {
+                        submitted[index] = true;
+                        advance();
+                    });
+                }
+            }
+
             
-            javax.swing.Timer timer = new javax.swing.Timer(100, e -> {
-                processNextCell(cells, index + 1);
-            });
-            timer.setRepeats(false);
-            timer.start();
+            while (nextInOrder < cells.size()) {
+                int i = nextInOrder;
+                if (graph.isCompiled(i)) {
+                    nextInOrder++;
+                    continue;
+                }
+                if (!allDone(graph.getDependencies(i), submitted)) {
+                    break;
+                }
+                NotebookCell cell = cells.get(i);
+                if (cell instanceof CodeCell) {
+                    ((CodeCell) cell).executeWithCallback(null);
+                } else {
+                    cell.execute();
+                }
+                submitted[i] = true;
+                nextInOrder++;
+            }
+
+            boolean finished = nextInOrder >= cells.size();
+            for (int i = 0; i < cells.size() && finished; i++) {
+                finished = !graph.isCompiled(i) || submitted[i];
+            }
+            if (finished) {
+                buildPool.shutdown();
+            }
+        }
+
+        private boolean allDone(java.util.List<Integer> dependencies, boolean[] done) {
+            for (int dependency : dependencies) {
+                if (!done[dependency]) {
+                    return false;
+                }
+            }
+            return true;
         }
     }
-    
+
     public void setKernelClient(JupyterKernelClient kernelClient) {
         this.kernelClient = kernelClient;
         
@@ -3794,7 +4026,7 @@ class NotebookPanel extends JPanel {
         
         if (currentCell == null) {
             if (cellsContainer.getComponentCount() > 0) {
-                Component lastComponent = cellsContainer.getComponent(cellsContainer.getComponentCount() - 1);
+                Component lastComponent = realizeAt(cellsContainer.getComponentCount() - 1);
                 if (lastComponent instanceof NotebookCell) {
                     ((NotebookCell) lastComponent).requestFocusInEditor();
                     ensureCellVisible((NotebookCell) lastComponent);
@@ -3815,7 +4047,7 @@ class NotebookPanel extends JPanel {
         
         
         if (currentIndex > 0) {
-            Component prevComponent = cellsContainer.getComponent(currentIndex - 1);
+            Component prevComponent = realizeAt(currentIndex - 1);
             if (prevComponent instanceof NotebookCell) {
                 NotebookCell prevCell = (NotebookCell) prevComponent;
                 prevCell.requestFocusInEditor();
@@ -3844,7 +4076,7 @@ class NotebookPanel extends JPanel {
         
         if (currentCell == null) {
             if (cellsContainer.getComponentCount() > 0) {
-                Component firstComponent = cellsContainer.getComponent(0);
+                Component firstComponent = realizeAt(0);
                 if (firstComponent instanceof NotebookCell) {
                     ((NotebookCell) firstComponent).requestFocusInEditor();
                     ensureCellVisible((NotebookCell) firstComponent);
@@ -3865,7 +4097,7 @@ class NotebookPanel extends JPanel {
         
         
         if (currentIndex >= 0 && currentIndex < cellsContainer.getComponentCount() - 1) {
-            Component nextComponent = cellsContainer.getComponent(currentIndex + 1);
+            Component nextComponent = realizeAt(currentIndex + 1);
             if (nextComponent instanceof NotebookCell) {
                 NotebookCell nextCell = (NotebookCell) nextComponent;
                 nextCell.requestFocusInEditor();
@@ -3927,7 +4159,7 @@ class NotebookPanel extends JPanel {
             addCodeCell();
             
             if (cellsContainer.getComponentCount() > 0) {
-                Component lastComponent = cellsContainer.getComponent(cellsContainer.getComponentCount() - 1);
+                Component lastComponent = realizeAt(cellsContainer.getComponentCount() - 1);
                 if (lastComponent instanceof NotebookCell) {
                     ((NotebookCell) lastComponent).requestFocusInEditor();
                 }
@@ -4022,13 +4254,17 @@ class NotebookPanel extends JPanel {
             }
             
             
+            if (currentCell instanceof CodeCell) {
+                cancelErrorCheck((CodeCell) currentCell);
+                ((CodeCell) currentCell).releaseOutput();
+            }
             cellsContainer.remove(currentCell);
             cellsContainer.revalidate();
             cellsContainer.repaint();
             
             
             if (nextFocusIndex >= 0 && nextFocusIndex < cellsContainer.getComponentCount()) {
-                Component nextComponent = cellsContainer.getComponent(nextFocusIndex);
+                Component nextComponent = realizeAt(nextFocusIndex);
                 if (nextComponent instanceof NotebookCell) {
                     ((NotebookCell) nextComponent).requestFocusInEditor();
                 }
@@ -4153,108 +4389,351 @@ class NotebookPanel extends JPanel {
     
     
     private void saveToFile(File file) {
+        if (loading) {
+            JOptionPane.showMessageDialog(this, 
+                "The notebook is still loading. Please save again once it has finished.", 
+                "Save Notebook", 
+                JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        compact(file, true);
+    }
+
+    
+    private void autosave() {
+        if (loading || autosavePending) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<String> order = cellOrder();
+        boolean orderChanged = !order.equals(journaledOrder);
+        boolean cellsChanged = false;
+        for (Component component : cellsContainer.getComponents()) {
+            if (component instanceof NotebookCell && !((NotebookCell) component).isExecuting()
+                    && isUnjournaled((NotebookCell) component)
+                    || component instanceof CellPlaceholder && !((CellPlaceholder) component).isJournaled()) {
+                cellsChanged = true;
+                break;
+            }
+        }
+        if (!orderChanged && !cellsChanged) {
+            if (savedFile != null && uncompactedChanges && now - lastCompaction >= NotebookJournal.getCompactIntervalMillis()) {
+                compact(savedFile, false);
+            }
+            return;
+        }
+        if (savedFile != null && now - lastCompaction >= NotebookJournal.getCompactIntervalMillis()) {
+            compact(savedFile, false);
+            return;
+        }
+        NotebookJournal current = journal;
         try {
-            
-            JSONObject notebook = new JSONObject();
-            
-            
-            JSONObject metadata = new JSONObject();
-            metadata.put("kernelspec", new JSONObject()
-                .put("display_name", "Python 3")
-                .put("language", "python")
-                .put("name", "python3"));
-            notebook.put("metadata", metadata);
-            
-            
-            JSONArray cells = new JSONArray();
-            Component[] components = cellsContainer.getComponents();
-            for (Component component : components) {
-                if (component instanceof CodeCell) {
-                    CodeCell cell = (CodeCell) component;
-                    
-                    cells.put(cell.toJSON());
-                } else if (component instanceof MarkdownCell) {
-                    MarkdownCell cell = (MarkdownCell) component;
-                    JSONObject cellObj = new JSONObject();
-                    cellObj.put("cell_type", "markdown");
-                    
-                    
-                    String source = cell.getMarkdownText();
-                    JSONArray sourceArray = new JSONArray();
-                    for (String line : source.split("\n")) {
-                        sourceArray.put(line + "\n");
-                    }
-                    cellObj.put("source", sourceArray);
-                    
-                    cells.put(cellObj);
+            if (savedFile == null && current != null && current.size() > JOURNAL_REWRITE_BYTES) {
+                compact(null, false);
+                return;
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading autosave journal size: " + e.getMessage());
+        }
+
+        boolean complete = current == null && savedFile == null;
+        OutputSidecar previous = outputSidecar;
+        List<Function<OutputSidecar, CellFragment>> changed = new ArrayList<>();
+        Map<NotebookCell, Integer> versions = new HashMap<>();
+        for (Component component : cellsContainer.getComponents()) {
+            if (component instanceof NotebookCell) {
+                NotebookCell cell = (NotebookCell) component;
+                if (cell.isExecuting() && !complete) {
+                    continue;
                 }
+                if (complete || isUnjournaled(cell)) {
+                    versions.put(cell, cell.getEditVersion());
+                    changed.add(cell.snapshotFragment(false));
+                }
+            } else if (component instanceof CellPlaceholder
+                    && (complete || !((CellPlaceholder) component).isJournaled())) {
+                CellPlaceholder placeholder = (CellPlaceholder) component;
+                placeholder.markJournaled();
+                changed.add(sidecar -> placeholder.getFragment(previous));
+            }
+        }
+        boolean writeOrder = orderChanged || current == null;
+        File notebookFile = savedFile;
+        journaledVersions.putAll(versions);
+        journaledOrder = order;
+        uncompactedChanges = true;
+        autosavePending = true;
+        NotebookJournal.submit(() -> {
+            NotebookJournal target = journal;
+            if (target == null) {
+                target = NotebookJournal.create(notebookFile);
+                journal = target;
+            }
+            OutputSidecar sidecar = target.getSidecar();
+            List<String> entries = new ArrayList<>();
+            if (writeOrder) {
+                entries.add(NotebookJournal.orderEntry(order));
+            }
+            for (Function<OutputSidecar, CellFragment> cell : changed) {
+                entries.add(NotebookJournal.cellEntry(encodeCell(cell, sidecar)));
+            }
+            target.append(entries);
+            return null;
+        }).whenComplete((ignored, ex) -> SwingUtilities.invokeLater(() -> {
+            autosavePending = false;
+            if (ex != null) {
+                System.err.println("Error writing autosave journal: " + ex.getMessage());
+                journaledVersions.keySet().removeAll(versions.keySet());
+                journaledOrder = new ArrayList<>();
+                showStatus("Autosave failed: " + ex.getMessage());
+            }
+        }));
+    }
+
+    private CompletableFuture<OutputSidecar> compact(File file, boolean userRequested) {
+        List<Function<OutputSidecar, CellFragment>> cells = new ArrayList<>();
+        Map<NotebookCell, Integer> versions = new HashMap<>();
+        OutputSidecar previous = outputSidecar;
+        boolean running = false;
+        for (Component component : cellsContainer.getComponents()) {
+            if (component instanceof NotebookCell) {
+                NotebookCell cell = (NotebookCell) component;
+                if (cell.isExecuting()) {
+                    cells.add(cell.snapshotFragment(false));
+                    running = true;
+                    continue;
+                }
+                versions.put(cell, cell.getEditVersion());
+                cells.add(cell.snapshotFragment(true));
+            } else if (component instanceof CellPlaceholder) {
+                CellPlaceholder placeholder = (CellPlaceholder) component;
+                placeholder.markJournaled();
+                cells.add(sidecar -> placeholder.getFragment(previous));
+            }
+        }
+        List<String> order = cellOrder();
+        journaledVersions.putAll(versions);
+        journaledOrder = order;
+        uncompactedChanges = running;
+        lastCompaction = System.currentTimeMillis();
+        autosavePending = true;
+
+        CompletableFuture<OutputSidecar> written = NotebookJournal.submit(() -> {
+            NotebookJournal current = journal;
+            if (file == null) {
+                OutputSidecar sidecar = current.getSidecar();
+                List<String> entries = new ArrayList<>();
+                entries.add(NotebookJournal.orderEntry(order));
+                for (Function<OutputSidecar, CellFragment> cell : cells) {
+                    entries.add(NotebookJournal.cellEntry(encodeCell(cell, sidecar)));
+                }
+                current.rewrite(entries);
+                sidecar.removeUnreferenced();
+                return sidecar;
             }
-            notebook.put("cells", cells);
-            
-            
-            notebook.put("nbformat", 4);
-            notebook.put("nbformat_minor", 5);
-            
-            
-            Files.write(file.toPath(), notebook.toString(2).getBytes(StandardCharsets.UTF_8));
             
+            JSONObject metadata = new JSONObject();
+            metadata.put("kernelspec", new JSONObject()
+                .put("display_name", "Python 3")
+                .put("language", "python")
+                .put("name", "python3"));
             
+            OutputSidecar sidecar = new OutputSidecar(file);
+            try (NotebookCodec.Writer writer = NotebookCodec.writeAtomically(file.toPath(), metadata)) {
+                for (Function<OutputSidecar, CellFragment> cell : cells) {
+                    writer.writeCell(encodeCell(cell, sidecar));
+                }
+                writer.finish();
+            }
+            sidecar.removeUnreferenced();
+            if (current != null) {
+                current.moveTo(file);
+                current.reset();
+            }
+            return sidecar;
+        });
+        written.whenComplete((sidecar, ex) -> SwingUtilities.invokeLater(() -> {
+            autosavePending = false;
+            if (ex != null) {
+                System.err.println("Error saving notebook: " + ex.getMessage());
+                journaledVersions.keySet().removeAll(versions.keySet());
+                journaledOrder = new ArrayList<>();
+                uncompactedChanges = true;
+                if (userRequested) {
+                    JOptionPane.showMessageDialog(this, 
+                        "Error saving notebook: " + ex.getMessage(), 
+                        "Save Error", 
+                        JOptionPane.ERROR_MESSAGE);
+                } else {
+                    showStatus("Autosave failed: " + ex.getMessage());
+                }
+                return;
+            }
+            outputSidecar = sidecar;
+            if (file == null) {
+                return;
+            }
             Component parent = SwingUtilities.getWindowAncestor(this);
-            if (parent instanceof JupyterNotebookIDE) {
-                JupyterNotebookIDE ide = (JupyterNotebookIDE) parent;
-                ide.updateTabTitle(this, file.getName());
+            if (userRequested && parent instanceof JupyterNotebookIDE) {
+                ((JupyterNotebookIDE) parent).updateTabTitle(this, file.getName());
+            }
+            showStatus((userRequested ? "Notebook saved to " : "Autosaved ") + file.getAbsolutePath());
+        }));
+        return written;
+    }
+
+    public CompletableFuture<Void> closeNotebook() {
+        autosaveTimer.stop();
+        realizeTimer.stop();
+        CompletableFuture<OutputSidecar> flushed = null;
+        if (savedFile != null && !loading && (uncompactedChanges || hasUnjournaledChanges())) {
+            flushed = compact(savedFile, false);
+        }
+        boolean untitled = savedFile == null;
+        boolean settled = !loading && !uncompactedChanges;
+        CompletableFuture<OutputSidecar> compaction = flushed;
+        
+        return NotebookJournal.submit(() -> {
+            NotebookJournal current = journal;
+            journal = null;
+            if (current != null) {
+                boolean flushedCleanly = settled
+                    && (compaction == null || (compaction.isDone() && !compaction.isCompletedExceptionally()));
+                if (untitled || flushedCleanly) {
+                    current.delete();
+                } else {
+                    current.close();
+                }
             }
-            
-            
-            JOptionPane.showMessageDialog(this, 
-                "Notebook saved successfully to:\n" + file.getAbsolutePath(), 
-                "Save Successful", 
-                JOptionPane.INFORMATION_MESSAGE);
-        } catch (Exception e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(this, 
-                "Error saving notebook: " + e.getMessage(), 
-                "Save Error", 
-                JOptionPane.ERROR_MESSAGE);
+            return null;
+        });
+    }
+
+    private static CellFragment encodeCell(Function<OutputSidecar, CellFragment> cell, OutputSidecar sidecar) {
+        CellFragment fragment = cell.apply(sidecar);
+        sidecar.retain(fragment.getStoredNames(), fragment.getSidecar());
+        return fragment;
+    }
+
+    private boolean hasUnjournaledChanges() {
+        for (Component component : cellsContainer.getComponents()) {
+            if (component instanceof NotebookCell && isUnjournaled((NotebookCell) component)
+                    || component instanceof CellPlaceholder && !((CellPlaceholder) component).isJournaled()) {
+                return true;
+            }
+        }
+        return !cellOrder().equals(journaledOrder);
+    }
+
+    private boolean isUnjournaled(NotebookCell cell) {
+        Integer version = journaledVersions.get(cell);
+        return version == null || version != cell.getEditVersion();
+    }
+
+    private void markJournaled() {
+        for (Component component : cellsContainer.getComponents()) {
+            if (component instanceof NotebookCell) {
+                NotebookCell cell = (NotebookCell) component;
+                journaledVersions.put(cell, cell.getEditVersion());
+            }
+        }
+        journaledOrder = cellOrder();
+    }
+
+    private List<String> cellOrder() {
+        List<String> order = new ArrayList<>();
+        for (Component component : cellsContainer.getComponents()) {
+            if (component instanceof NotebookCell) {
+                order.add(((NotebookCell) component).getCellId());
+            } else if (component instanceof CellPlaceholder) {
+                order.add(((CellPlaceholder) component).getCellId());
+            }
+        }
+        return order;
+    }
+
+    private static void ensureCellId(JSONObject cellObj, int index) {
+        if (cellObj.optString("id", "").isEmpty()) {
+            cellObj.put("id", "cell-" + index);
         }
     }
 
+    private void showStatus(String message) {
+        Window window = SwingUtilities.getWindowAncestor(this);
+        if (window instanceof JupyterNotebookIDE) {
+            ((JupyterNotebookIDE) window).showStatus(message);
+        }
+    }
+
+    
+    public void recoverFromJournal(NotebookJournal recovered) {
+        removeAllCells();
+        journal = recovered;
+        File file = recovered.getNotebookFile();
+        savedFile = file;
+        outputSidecar = recovered.getSidecar();
+        final long generation = ++loadGeneration;
+        loading = true;
+        LOAD_POOL.execute(() -> {
+            try {
+                List<JSONObject> base = new ArrayList<>();
+                if (file != null && file.isFile()) {
+                    int[] index = {0};
+                    NotebookCodec.read(file.toPath(), cell -> {
+                        ensureCellId(cell, index[0]++);
+                        base.add(cell);
+                    });
+                }
+                List<JSONObject> cells = recovered.replay(base);
+                SwingUtilities.invokeLater(() -> {
+                    if (generation != loadGeneration) {
+                        return;
+                    }
+                    for (JSONObject cell : cells) {
+                        addPlaceholder(cell);
+                    }
+                    loading = false;
+                    journaledOrder = cellOrder();
+                    uncompactedChanges = true;
+                    lastCompaction = 0;
+                    cellsContainer.revalidate();
+                    cellsContainer.repaint();
+                    scheduleRealize();
+                });
+            } catch (Exception e) {
+                e.printStackTrace();
+                SwingUtilities.invokeLater(() -> {
+                    if (generation != loadGeneration) {
+                        return;
+                    }
+                    loading = false;
+                    JOptionPane.showMessageDialog(this, 
+                        "Error recovering notebook: " + e.getMessage(), 
+                        "Recovery Error", 
+                        JOptionPane.ERROR_MESSAGE);
+                });
+            }
+        });
+    }
+
     
     public void loadFromJson(JSONObject notebook) {
         try {
             
-            cellsContainer.removeAll();
+            removeAllCells();
             
             
             JSONArray cells = notebook.getJSONArray("cells");
             for (int i = 0; i < cells.length(); i++) {
-                JSONObject cellObj = cells.getJSONObject(i);
-                String cellType = cellObj.getString("cell_type");
-                
-                if ("code".equals(cellType)) {
-                    CodeCell cell = new CodeCell(kernelClient, currentDirectory);
-                
-                    cell.fromJSON(cellObj);
-                    cellsContainer.add(cell);
-                } else if ("markdown".equals(cellType)) {
-                    MarkdownCell cell = new MarkdownCell();
-                    
-                    
-                    JSONArray sourceArray = cellObj.getJSONArray("source");
-                    StringBuilder sourceText = new StringBuilder();
-                    for (int j = 0; j < sourceArray.length(); j++) {
-                        sourceText.append(sourceArray.getString(j));
-                    }
-                    
-                    cell.setMarkdownText(sourceText.toString());
-                    cell.execute();  
-                    cellsContainer.add(cell);
-                }
+                ensureCellId(cells.getJSONObject(i), i);
+                addPlaceholder(cells.getJSONObject(i));
             }
+            journaledOrder = cellOrder();
             
             
             cellsContainer.revalidate();
             cellsContainer.repaint();
+            scheduleRealize();
         } catch (Exception e) {
             e.printStackTrace();
             JOptionPane.showMessageDialog(this, 
@@ -4263,6 +4742,244 @@ class NotebookPanel extends JPanel {
                 JOptionPane.ERROR_MESSAGE);
         }
     }
+
+    
+    public void loadFromFile(File file) {
+        removeAllCells();
+        outputSidecar = new OutputSidecar(file);
+        final long generation = ++loadGeneration;
+        loading = true;
+        LOAD_POOL.execute(() -> {
+            List<JSONObject> batch = new ArrayList<>();
+            long[] lastFlush = {System.currentTimeMillis()};
+            int[] index = {0};
+            try {
+                NotebookCodec.read(file.toPath(), cell -> {
+                    ensureCellId(cell, index[0]++);
+                    batch.add(cell);
+                    long now = System.currentTimeMillis();
+                    if (batch.size() >= LOAD_BATCH_SIZE || now - lastFlush[0] >= LOAD_FLUSH_MILLIS) {
+                        addPlaceholdersLater(generation, new ArrayList<>(batch), false);
+                        batch.clear();
+                        lastFlush[0] = now;
+                    }
+                });
+                addPlaceholdersLater(generation, batch, true);
+            } catch (Exception e) {
+                e.printStackTrace();
+                SwingUtilities.invokeLater(() -> {
+                    if (generation != loadGeneration) {
+                        return;
+                    }
+                    loading = false;
+                    
+                    savedFile = null;
+                    JOptionPane.showMessageDialog(this, 
+                        "Error loading notebook: " + e.getMessage(), 
+                        "Load Error", 
+                        JOptionPane.ERROR_MESSAGE);
+                });
+            }
+        });
+    }
+
+    public boolean isLoading() {
+        return loading;
+    }
+
+    private void addPlaceholdersLater(long generation, List<JSONObject> cells, boolean finished) {
+        SwingUtilities.invokeLater(() -> {
+            if (generation != loadGeneration) {
+                return;
+            }
+            for (JSONObject cell : cells) {
+                addPlaceholder(cell);
+            }
+            if (finished) {
+                loading = false;
+                journaledOrder = cellOrder();
+            }
+            cellsContainer.revalidate();
+            cellsContainer.repaint();
+            scheduleRealize();
+        });
+    }
+
+    private void removeAllCells() {
+        for (Component component : cellsContainer.getComponents()) {
+            if (component instanceof CodeCell) {
+                cancelErrorCheck((CodeCell) component);
+                ((CodeCell) component).releaseOutput();
+            }
+        }
+        cellsContainer.removeAll();
+        journaledVersions.clear();
+        pendingPlaceholders = 0;
+        realizeTimer.stop();
+    }
+
+    private void addPlaceholder(JSONObject cellObj) {
+        String cellType = cellObj.optString("cell_type", "");
+        if (!"code".equals(cellType) && !"markdown".equals(cellType)) {
+            return;
+        }
+        CellPlaceholder placeholder = new CellPlaceholder(cellObj);
+        placeholder.setEstimatedHeight(estimateHeight(placeholder));
+        cellsContainer.add(placeholder);
+        pendingPlaceholders++;
+    }
+
+    private int estimateHeight(CellPlaceholder placeholder) {
+        int lines = placeholder.getSourceLineCount();
+        int lineHeight = placeholder.getSourceLineHeight();
+        int body = "code".equals(placeholder.getCellType()) ? Math.max(13, lines) * lineHeight + 4 : lines * lineHeight;
+        Integer chrome = measuredChrome.get(placeholder.getCellType());
+        return body + (chrome != null ? chrome : DEFAULT_CHROME_HEIGHT);
+    }
+
+    private NotebookCell createCell(JSONObject cellObj) {
+        String cellType = cellObj.optString("cell_type", "");
+        
+        if ("code".equals(cellType)) {
+            CodeCell cell = new CodeCell(kernelClient, currentDirectory);
+        
+            cell.setCellId(cellObj.optString("id", null));
+            cell.fromJSON(cellObj, outputSidecar);
+            if (!errorCheckingEnabled) {
+                cell.setErrorCheckingEnabled(false);
+            }
+            return cell;
+        } else if ("markdown".equals(cellType)) {
+            MarkdownCell cell = new MarkdownCell();
+            cell.setCellId(cellObj.optString("id", null));
+            cell.setMarkdownText(CellPlaceholder.sourceText(cellObj));
+            cell.execute();  
+            return cell;
+        }
+        return null;
+    }
+
+    
+    private void scheduleRealize() {
+        if (pendingPlaceholders > 0 && !realizeTimer.isRunning()) {
+            realizeTimer.start();
+        }
+    }
+
+    private NotebookCell replacePlaceholder(int index) {
+        CellPlaceholder placeholder = (CellPlaceholder) cellsContainer.getComponent(index);
+        NotebookCell cell = createCell(placeholder.getCellJson());
+        cellsContainer.remove(index);
+        pendingPlaceholders--;
+        if (cell != null) {
+            journaledVersions.put(cell, cell.getEditVersion());
+            cellsContainer.add(cell, index);
+        }
+        return cell;
+    }
+
+    private Component realizeAt(int index) {
+        Component component = cellsContainer.getComponent(index);
+        if (component instanceof CellPlaceholder) {
+            component = replacePlaceholder(index);
+            cellsContainer.validate();
+        }
+        return component;
+    }
+
+    public void realizeAllCells() {
+        if (pendingPlaceholders == 0) {
+            return;
+        }
+        for (int i = 0; i < cellsContainer.getComponentCount(); i++) {
+            if (cellsContainer.getComponent(i) instanceof CellPlaceholder) {
+                replacePlaceholder(i);
+            }
+        }
+        cellsContainer.revalidate();
+        cellsContainer.repaint();
+    }
+
+    
+    private void realizeNearViewport() {
+        if (pendingPlaceholders == 0 || !cellsContainer.isShowing()) {
+            realizeTimer.stop();
+            return;
+        }
+        JViewport viewport = notebookScrollPane.getViewport();
+        Rectangle view = viewport.getViewRect();
+        Rectangle near = new Rectangle(view.x, view.y - view.height, view.width, view.height * 3);
+        long deadline = System.nanoTime() + REALIZE_BUDGET_NANOS;
+
+        List<NotebookCell> realized = new ArrayList<>();
+        List<Integer> lineCounts = new ArrayList<>();
+        List<NotebookCell> above = new ArrayList<>();
+        int oldAboveHeight = 0;
+        boolean outOfTime = false;
+        for (Rectangle area : new Rectangle[] {view, near}) {
+            for (int i = 0; i < cellsContainer.getComponentCount() && !outOfTime; i++) {
+                Component component = cellsContainer.getComponent(i);
+                if (!(component instanceof CellPlaceholder) || !component.getBounds().intersects(area)) {
+                    continue;
+                }
+                if (!realized.isEmpty() && System.nanoTime() > deadline) {
+                    outOfTime = true;
+                    break;
+                }
+                boolean isAbove = component.getY() + component.getHeight() <= view.y;
+                int oldHeight = component.getHeight();
+                int lines = ((CellPlaceholder) component).getSourceLineCount();
+                NotebookCell cell = replacePlaceholder(i);
+                if (cell == null) {
+                    continue;
+                }
+                realized.add(cell);
+                lineCounts.add(lines);
+                if (isAbove) {
+                    above.add(cell);
+                    oldAboveHeight += oldHeight;
+                }
+            }
+        }
+
+        if (realized.isEmpty()) {
+            realizeTimer.stop();
+            return;
+        }
+
+        notebookScrollPane.validate();
+        
+        boolean recalibrated = false;
+        for (int i = 0; i < realized.size(); i++) {
+            NotebookCell cell = realized.get(i);
+            String cellType = cell instanceof CodeCell ? "code" : "markdown";
+            if (!measuredChrome.containsKey(cellType)) {
+                int lines = lineCounts.get(i);
+                int lineHeight = cell.getFontMetrics(new Font(Font.MONOSPACED, Font.PLAIN, 18)).getHeight();
+                int body = cell instanceof CodeCell ? Math.max(13, lines) * lineHeight + 4 : lines * lineHeight;
+                measuredChrome.put(cellType, Math.max(0, cell.getHeight() - body));
+                recalibrated = true;
+            }
+        }
+        if (recalibrated) {
+            for (Component component : cellsContainer.getComponents()) {
+                if (component instanceof CellPlaceholder) {
+                    ((CellPlaceholder) component).setEstimatedHeight(estimateHeight((CellPlaceholder) component));
+                }
+            }
+            notebookScrollPane.validate();
+        }
+
+        int newAboveHeight = 0;
+        for (NotebookCell cell : above) {
+            newAboveHeight += cell.getHeight();
+        }
+        if (newAboveHeight != oldAboveHeight) {
+            Point position = viewport.getViewPosition();
+            viewport.setViewPosition(new Point(position.x, Math.max(0, position.y + newAboveHeight - oldAboveHeight)));
+        }
+        cellsContainer.repaint();
+    }
 }
 
 
@@ -4270,6 +4987,9 @@ abstract class NotebookCell extends JPanel {
     protected JPanel toolBar;
     protected JPanel inputArea;
     protected JPanel outputArea;
+    private String cellId = newCellId();
+    private final AtomicInteger editVersion = new AtomicInteger();
+    private volatile CellFragment fragment;
     
     public NotebookCell() {
         setLayout(new BorderLayout());
@@ -4294,6 +5014,55 @@ abstract class NotebookCell extends JPanel {
     }
     
     public abstract void execute();
+
+    
+    public abstract Function<OutputSidecar, JSONObject> snapshotJSON();
+
+    public boolean isExecuting() {
+        return false;
+    }
+
+    protected boolean hasLargeOutput() {
+        return false;
+    }
+
+    
+    public Function<OutputSidecar, CellFragment> snapshotFragment(boolean offload) {
+        int version = getEditVersion();
+        CellFragment cached = fragment;
+        if (cached != null && cached.getVersion() == version && (!offload || !cached.isPartial())) {
+            return sidecar -> cached;
+        }
+        boolean partial = !offload && hasLargeOutput();
+        Function<OutputSidecar, JSONObject> snapshot = snapshotJSON();
+        return sidecar -> {
+            CellFragment encoded = CellFragment.encode(snapshot.apply(offload ? sidecar : null), version, sidecar, partial);
+            fragment = encoded;
+            return encoded;
+        };
+    }
+
+    public String getCellId() {
+        return cellId;
+    }
+
+    public void setCellId(String id) {
+        if (id != null && !id.isEmpty()) {
+            cellId = id;
+        }
+    }
+
+    public void markModified() {
+        editVersion.incrementAndGet();
+    }
+
+    public int getEditVersion() {
+        return editVersion.get();
+    }
+
+    static String newCellId() {
+        return UUID.randomUUID().toString().replace("-", "").substring(0, 16);
+    }
     
     
     public void requestFocusInEditor() {
@@ -4307,6 +5076,10 @@ abstract class NotebookCell extends JPanel {
 class CodeCell extends NotebookCell {
     private RSyntaxTextArea codeArea;
     private JTextPane outputTextArea;
+    private OutputViewer outputViewer;
+    private JScrollPane outputScrollPane;
+    private JTable tableOutput;
+    private JScrollPane tableOutputPane;
     private JupyterKernelClient kernelClient;
     private JComboBox<String> languageCombo; 
     String selectedLanguage = "Python"; 
@@ -4317,7 +5090,6 @@ class CodeCell extends NotebookCell {
     private boolean errorCheckingEnabled = true;
     private VisualizationPanel visualPanel;
     private JSplitPane sidebarSplitPane;
-    private Timer outputUpdateTimer;
     private boolean hasBeenEdited = true;
     private Timer executionTimer;
     private long startTime;
@@ -4325,8 +5097,73 @@ class CodeCell extends NotebookCell {
     private volatile boolean isExecuting = false;
     private JTextField customFilenameField;
     private JButton copyOutputButton;
-    private String lastOutputText = ""; 
     String customOutputFilename = ""; 
+    private StreamingOutputModel streamingOutput;
+    private JLabel executionStatusLabel;
+    private volatile boolean receivedDisplayImage = false;
+    private long formatGeneration = 0;
+    private volatile Integer executionCount = null;
+    private String htmlOutputSource;
+    private String tablePayload;
+    private JSONArray restoringOutputs;
+    private OutputSidecar restoringSidecar;
+    private final ExecutionListener outputListener = new ExecutionListener() {
+        @Override
+        public void onOutput(String chunk) {
+            streamingOutput.appendLine(chunk);
+        }
+
+        @Override
+        public void onDisplayData(String mimeType, byte[] data, String displayId, boolean update) {
+            if (DataFrameTableModel.TABLE_MIME_TYPE.equals(mimeType)) {
+                showTableOutput(new String(data, StandardCharsets.UTF_8), true);
+                return;
+            }
+            receivedDisplayImage = true;
+            SwingUtilities.invokeLater(() -> {
+                visualPanel.addFigure(data, displayId, update);
+                markModified();
+            });
+        }
+
+        @Override
+        public void onClearOutput(boolean wait) {
+            SwingUtilities.invokeLater(() -> {
+                visualPanel.clearOutput(wait);
+                markModified();
+            });
+        }
+
+        @Override
+        public void onExecutionCount(int count) {
+            executionCount = count;
+            markModified();
+        }
+
+        @Override
+        public void onExecutionStarted() {
+            SwingUtilities.invokeLater(() -> startExecutionTimer());
+        }
+    };
+
+    private void startExecutionTimer() {
+        if (!isExecuting || executionTimer != null) {
+            return;
+        }
+        startTime = System.currentTimeMillis();
+        executionStatusLabel.setText("Executing...");
+        executionTimer = new Timer(100, e -> {
+            if (isExecuting) {
+                long elapsedTime = System.currentTimeMillis() - startTime;
+                double seconds = elapsedTime / 1000.0;
+                updateExecutionStatus("Executing", seconds);
+            } else {
+                ((Timer)e.getSource()).stop();
+            }
+        });
+        executionTimer.setRepeats(true);
+        executionTimer.start();
+    }
     
     private boolean isValidFilename(String filename) {
         
@@ -4485,20 +5322,14 @@ class CodeCell extends NotebookCell {
     
     public void markAsEdited() {
         hasBeenEdited = true;
+        markModified();
+        if (errorChecker != null) {
+            errorChecker.supersede();
+        }
     }
 
     
-    public void performSequentialErrorCheck(Runnable callback) {
-        
-        if (!hasBeenEdited) {
-            System.out.println("Cell has not been edited, skipping check");
-            if (callback != null) {
-                callback.run();
-            }
-            return;
-        }
-        
-        System.out.println("Performing error check on edited cell");
+    public CompletableFuture<?> performErrorCheck() {
         hasBeenEdited = false; 
         
         
@@ -4513,19 +5344,13 @@ class CodeCell extends NotebookCell {
         
         
         if (errorChecker != null && errorCheckingEnabled) {
+            errorChecker.supersede();
             errorChecker.checkErrors();
             codeArea.forceReparsing(errorChecker.parser);
             codeArea.repaint();
+            return errorChecker.getInFlightCheck();
         }
-        
-        
-        Timer timer = new Timer(100, e -> {
-            if (callback != null) {
-                callback.run();
-            }
-        });
-        timer.setRepeats(false);
-        timer.start();
+        return null;
     }
 
     private void updateErrorChecker() {
@@ -4569,6 +5394,11 @@ class CodeCell extends NotebookCell {
             
             if (errorChecker != null) {
                 Timer initialCheckTimer = new Timer(1000, e -> {
+                    NotebookPanel notebook = findNotebookPanel();
+                    if (notebook != null) {
+                        notebook.scheduleErrorCheck(this);
+                        return;
+                    }
                     try {
                         errorChecker.safeCheckErrors();
                     } catch (Exception ex) {
@@ -4600,33 +5430,37 @@ class CodeCell extends NotebookCell {
     }
     
     
-    private boolean errorCheckQueued = false;
+    private NotebookPanel findNotebookPanel() {
+        Container parent = getParent();
+        while (parent != null && !(parent instanceof NotebookPanel)) {
+            parent = parent.getParent();
+        }
+        return (NotebookPanel) parent;
+    }
 
     public void checkErrorsNow() {
-        if (errorChecker != null && errorCheckingEnabled && !errorCheckQueued) {
-            
-            Container parent = getParent();
-            while (parent != null && !(parent instanceof NotebookPanel)) {
-                parent = parent.getParent();
-            }
-            
-            if (parent instanceof NotebookPanel) {
-                
-                errorCheckQueued = true;
-                
-                
-                ((NotebookPanel) parent).queueErrorCheck(this);
-                
-                
-                Timer resetTimer = new Timer(1000, e -> errorCheckQueued = false);
-                resetTimer.setRepeats(false);
-                resetTimer.start();
+        if (errorChecker != null && errorCheckingEnabled) {
+            NotebookPanel notebook = findNotebookPanel();
+            if (notebook != null) {
+                notebook.queueErrorCheck(this);
             } else {
                 
                 errorChecker.checkErrors();
             }
         }
     }
+
+    private void scheduleErrorCheck() {
+        if (errorChecker == null || !errorCheckingEnabled || !hasBeenEdited) {
+            return;
+        }
+        NotebookPanel notebook = findNotebookPanel();
+        if (notebook != null) {
+            notebook.scheduleErrorCheck(this);
+        } else {
+            errorChecker.checkErrors();
+        }
+    }
     
     
     private void addErrorCheckButton() {
@@ -4648,9 +5482,31 @@ class CodeCell extends NotebookCell {
     }
 
     public JSONObject toJSON() {
+        return toJSON(null);
+    }
+
+    public JSONObject toJSON(OutputSidecar sidecar) {
+        return snapshotJSON().apply(sidecar);
+    }
+
+    @Override
+    public boolean isExecuting() {
+        return isExecuting;
+    }
+
+    @Override
+    protected boolean hasLargeOutput() {
+        return restoringOutputs == null && htmlOutputSource == null
+            && outputViewer.getStore().getByteLength() > OutputSidecar.INLINE_LIMIT_BYTES;
+    }
+
+    @Override
+    public Function<OutputSidecar, JSONObject> snapshotJSON() {
+        final Integer count = executionCount;
         JSONObject cellObj = new JSONObject();
+        cellObj.put("id", getCellId());
         cellObj.put("cell_type", "code");
-        cellObj.put("execution_count", (Object)null);
+        cellObj.put("execution_count", count != null ? (Object) count : JSONObject.NULL);
         
         
         JSONObject metadata = new JSONObject();
@@ -4661,17 +5517,108 @@ class CodeCell extends NotebookCell {
         cellObj.put("metadata", metadata);
         
         
-        String source = getCodeText();
-        JSONArray sourceArray = new JSONArray();
-        for (String line : source.split("\n")) {
-            sourceArray.put(line + "\n");
-        }
-        cellObj.put("source", sourceArray);
+        cellObj.put("source", NotebookCodec.splitMultiline(getCodeText()));
         
         
-        cellObj.put("outputs", new JSONArray());
+        final JSONArray restoring = restoringOutputs;
+        final OutputSidecar restoringFrom = restoringSidecar;
+        if (restoring != null) {
+            return sidecar -> {
+                cellObj.put("outputs", restoring);
+                if (sidecar != null) {
+                    sidecar.retain(cellObj, restoringFrom);
+                }
+                return cellObj;
+            };
+        }
+        final String html = htmlOutputSource;
+        final OutputStore store = outputViewer.getStore();
+        final String table = tablePayload;
+        final String tableSummary = table != null ? tableOutputPane.getToolTipText() : null;
+        final List<FigureStore.Figure> figures = visualPanel != null ? visualPanel.getFigures() : Collections.<FigureStore.Figure>emptyList();
+        return sidecar -> cellObj.put("outputs", outputsToJSON(sidecar, count, html, store, table, tableSummary, figures));
+    }
+
+    private static JSONArray outputsToJSON(OutputSidecar sidecar, Integer executionCount, String htmlOutputSource,
+                                           OutputStore store, String tablePayload, String tableSummary,
+                                           List<FigureStore.Figure> figures) {
+        JSONArray outputs = new JSONArray();
+        
+        if (htmlOutputSource != null) {
+            outputs.put(new JSONObject()
+                .put("output_type", "execute_result")
+                .put("execution_count", executionCount != null ? (Object) executionCount : JSONObject.NULL)
+                .put("metadata", new JSONObject())
+                .put("data", new JSONObject()
+                    .put("text/html", NotebookCodec.splitMultiline(htmlOutputSource))
+                    .put("text/plain", NotebookCodec.splitMultiline(store.getText()))));
+        } else if (!store.isEmpty()) {
+            if (store.getByteLength() > OutputSidecar.INLINE_LIMIT_BYTES) {
+                StringBuilder preview = new StringBuilder();
+                for (int line = 0; line < Math.min(50, store.getLineCount()); line++) {
+                    preview.append(store.getLine(line)).append('\n');
+                }
+                if (sidecar == null) {
+                    preview.append("[output truncated: ").append(store.getByteLength()).append(" bytes]\n");
+                    outputs.put(new JSONObject()
+                        .put("output_type", "stream")
+                        .put("name", "stdout")
+                        .put("text", NotebookCodec.splitMultiline(preview.toString())));
+                } else try {
+                    String storedName = sidecar.store(store::writeTo, "txt");
+                    outputs.put(new JSONObject()
+                        .put("output_type", "display_data")
+                        .put("metadata", new JSONObject())
+                        .put("data", new JSONObject()
+                            .put(OutputSidecar.SIDECAR_MIME_TYPE, new JSONObject()
+                                .put("file", storedName)
+                                .put("mime", "text/plain")
+                                .put("bytes", store.getByteLength()))
+                            .put("text/plain", NotebookCodec.splitMultiline(preview.toString()))));
+                } catch (IOException e) {
+                    System.err.println("Error storing cell output: " + e.getMessage());
+                }
+            } else {
+                outputs.put(new JSONObject()
+                    .put("output_type", "stream")
+                    .put("name", "stdout")
+                    .put("text", NotebookCodec.splitMultiline(store.getText())));
+            }
+        }
+        
+        if (tablePayload != null) {
+            outputs.put(new JSONObject()
+                .put("output_type", "display_data")
+                .put("metadata", new JSONObject())
+                .put("data", new JSONObject()
+                    .put(DataFrameTableModel.TABLE_MIME_TYPE, tablePayload)
+                    .put("text/plain", tableSummary)));
+        }
         
-        return cellObj;
+        for (FigureStore.Figure figure : figures) {
+            JSONObject data = new JSONObject();
+            byte[] bytes = figure.getCompressedBytes();
+            if (sidecar != null && bytes.length > OutputSidecar.INLINE_LIMIT_BYTES) {
+                try {
+                    String mimeType = figure.getMimeType();
+                    data.put(OutputSidecar.SIDECAR_MIME_TYPE, new JSONObject()
+                        .put("file", sidecar.store(bytes, mimeType.substring(mimeType.indexOf('/') + 1)))
+                        .put("mime", mimeType)
+                        .put("bytes", bytes.length));
+                    data.put("text/plain", "<Figure stored in " + sidecar.getDirectory().getName() + ">");
+                } catch (IOException e) {
+                    System.err.println("Error storing figure output: " + e.getMessage());
+                    continue;
+                }
+            } else {
+                data.put(figure.getMimeType(), Base64.getEncoder().encodeToString(bytes));
+            }
+            outputs.put(new JSONObject()
+                .put("output_type", "display_data")
+                .put("metadata", new JSONObject())
+                .put("data", data));
+        }
+        return outputs;
     }
 
     
@@ -4854,15 +5801,9 @@ class CodeCell extends NotebookCell {
 
         
         codeArea.addKeyListener(new KeyAdapter() {
-            private Timer debounceTimer = new Timer(1000, e -> checkErrorsNow());
-            
             @Override
             public void keyReleased(KeyEvent e) {
-                
-                if (debounceTimer.isRunning()) {
-                    debounceTimer.stop();
-                }
-                debounceTimer.start();
+                scheduleErrorCheck();
             }
         });
         
@@ -5007,9 +5948,19 @@ class CodeCell extends NotebookCell {
         outputTextArea.setBackground(new Color(10, 10, 30));
         outputTextArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 18));
         outputTextArea.setFocusable(true);
+        outputViewer = new OutputViewer(new OutputStore(OutputStore.getSpillThresholdBytes()));
+        outputViewer.setFocusTraversalKeysEnabled(false);
+        streamingOutput = new StreamingOutputModel(outputViewer);
+
+        
+        executionStatusLabel = new JLabel();
+        executionStatusLabel.setForeground(new Color(0x4EC9B0));
+        executionStatusLabel.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 14));
+        executionStatusLabel.setBorder(BorderFactory.createEmptyBorder(2, 4, 2, 4));
+        executionStatusLabel.setVisible(false);
 
         
-        JScrollPane outputScrollPane = new JScrollPane(outputTextArea);
+        outputScrollPane = new JScrollPane(outputViewer);
         outputScrollPane.setFocusTraversalKeysEnabled(false);
         outputTextArea.setFocusTraversalKeysEnabled(false);
         outputScrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
@@ -5087,7 +6038,9 @@ class CodeCell extends NotebookCell {
         layeredPane.add(buttonPanel, JLayeredPane.PALETTE_LAYER);
 
         
+        outputArea.add(executionStatusLabel, BorderLayout.NORTH);
         outputArea.add(layeredPane, BorderLayout.CENTER);
+        outputArea.add(createTableOutputPane(), BorderLayout.SOUTH);
         
         
         String[] cellTypes = {"Code", "Markdown"};
@@ -5220,6 +6173,7 @@ class CodeCell extends NotebookCell {
         languageCombo.addActionListener(e -> {
             selectedLanguage = (String)languageCombo.getSelectedItem();
             updateSyntaxHighlighting();
+            markModified();
             
             
             Color languageColor;
@@ -5290,6 +6244,7 @@ class CodeCell extends NotebookCell {
                 if (filename.isEmpty() || isValidFilename(filename)) {
                     customFilenameField.setForeground(Color.WHITE);
                     customOutputFilename = filename;
+                    markModified();
                 } else {
                     customFilenameField.setForeground(new Color(255, 100, 100)); 
                 }
@@ -5340,14 +6295,14 @@ class CodeCell extends NotebookCell {
     }
 
     private void copyOutputToClipboard() {
-        if (lastOutputText != null && !lastOutputText.isEmpty()) {
+        if (!outputViewer.getStore().isEmpty()) {
             try {
                 
                 Toolkit toolkit = Toolkit.getDefaultToolkit();
                 Clipboard clipboard = toolkit.getSystemClipboard();
                 
                 
-                StringSelection selection = new StringSelection(lastOutputText);
+                StringSelection selection = new StringSelection(outputViewer.getStore().getText());
                 
                 
                 clipboard.setContents(selection, null);
@@ -5648,9 +6603,11 @@ class CodeCell extends NotebookCell {
     public void clearOutput() {
         
         stopExecution();
-        
-        
-        lastOutputText = "";
+        formatGeneration++;
+        executionCount = null;
+        restoringOutputs = null;
+        restoringSidecar = null;
+        markModified();
         
         
         if (copyOutputButton != null) {
@@ -5658,12 +6615,13 @@ class CodeCell extends NotebookCell {
         }
         
         
-        setOutputText("", false);
+        setOutputText("");
         
         
         if (visualPanel != null) {
             visualPanel.clearVisualization();
         }
+        clearTableOutput();
     }
     
     public void executeWithCallback(Runnable callback) {
@@ -5671,6 +6629,7 @@ class CodeCell extends NotebookCell {
         
         
         isExecuting = true;
+        resetStreamedOutput();
         
         
         final boolean wasErrorCheckingEnabled = errorChecker != null ? errorChecker.isCheckingEnabled : false;
@@ -5679,7 +6638,7 @@ class CodeCell extends NotebookCell {
         }
         
         
-        setOutputText("Executing...", false);
+        beginStreamingOutput("Queued...");
         
         
         if (executionTimer != null) {
@@ -5689,25 +6648,10 @@ class CodeCell extends NotebookCell {
         
         
         startTime = System.currentTimeMillis();
-        executionTimer = new Timer(100, e -> {
-            if (isExecuting) {
-                long elapsedTime = System.currentTimeMillis() - startTime;
-                double seconds = elapsedTime / 1000.0;
-                SwingUtilities.invokeLater(() -> {
-                    if (isExecuting) {
-                        setOutputText("Executing... (" + timerFormat.format(seconds) + "s)", false);
-                    }
-                });
-            } else {
-                ((Timer)e.getSource()).stop();
-            }
-        });
-        executionTimer.setRepeats(true);
-        executionTimer.start();
         
         if (kernelClient != null) {
             String code = getExecutableCode();
-            kernelClient.executeCode(code)
+            kernelClient.executeCode(code, outputListener)
                 .thenAccept(result -> SwingUtilities.invokeLater(() -> {
                     
                     isExecuting = false;
@@ -5721,8 +6665,7 @@ class CodeCell extends NotebookCell {
                     double seconds = executionTime / 1000.0;
                     
                     
-                    String resultWithTime = "Execution completed in " + timerFormat.format(seconds) + "s\n\n" + result;
-                    setFormattedOutput(resultWithTime);
+                    finishStreamedOutput("Execution completed in " + timerFormat.format(seconds) + "s");
                     
                     
                     if (errorChecker != null && wasErrorCheckingEnabled) {
@@ -5773,7 +6716,7 @@ class CodeCell extends NotebookCell {
                 executionTimer.stop();
                 executionTimer = null;
             }
-            setOutputText("Error: No kernel client available", false);
+            setOutputText("Error: No kernel client available");
             
             if (errorChecker != null && wasErrorCheckingEnabled) {
                 errorChecker.setCheckingEnabled(true);
@@ -5783,7 +6726,180 @@ class CodeCell extends NotebookCell {
             }
         }
     }
-    
+    
+    private void resetStreamedOutput() {
+        receivedDisplayImage = false;
+    }
+
+    private void beginStreamingOutput(String status) {
+        copyOutputButton.setVisible(false);
+        showOutputView(outputViewer);
+        streamingOutput.begin();
+        executionStatusLabel.setText(status);
+        executionStatusLabel.setVisible(true);
+    }
+
+    private void updateExecutionStatus(String phase, double seconds) {
+        if (!isExecuting) {
+            return;
+        }
+        String status = phase + "... (" + timerFormat.format(seconds) + "s)";
+        int lines = streamingOutput.getLineCount();
+        if (lines > 0) {
+            status += "  [" + lines + (lines == 1 ? " line]" : " lines]");
+        }
+        executionStatusLabel.setText(status);
+    }
+
+    void executeBuild(String envPath, ExecutorService buildPool, java.util.function.Consumer<String> onBuilt) {
+        clearOutput();
+        isExecuting = true;
+        resetStreamedOutput();
+        beginStreamingOutput("Building...");
+
+        if (executionTimer != null) {
+            executionTimer.stop();
+            executionTimer = null;
+        }
+        startTime = System.currentTimeMillis();
+        executionTimer = new Timer(100, e -> {
+            if (isExecuting) {
+                double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+                updateExecutionStatus("Building", seconds);
+            } else {
+                ((Timer)e.getSource()).stop();
+            }
+        });
+        executionTimer.setRepeats(true);
+        executionTimer.start();
+
+        final String code = getExecutableCode();
+        final File workDir = currentDirectory;
+        buildPool.execute(() -> {
+            StringBuilder output = new StringBuilder();
+            try {
+                ProcessBuilder pb = new ProcessBuilder(LintService.findPythonExecutable(envPath), "-u", "-c", code);
+                if (envPath != null && !envPath.trim().isEmpty()) {
+                    
+                    Map<String, String> env = pb.environment();
+                    env.put("VIRTUAL_ENV", envPath);
+                    env.put("PATH", new File(envPath, "bin").getAbsolutePath() + File.pathSeparator + env.get("PATH"));
+                    env.remove("PYTHONHOME");
+                    env.remove("PYTHONPATH");
+                }
+                pb.directory(workDir);
+                pb.redirectErrorStream(true);
+                Process process = pb.start();
+                try (java.io.BufferedReader reader = new java.io.BufferedReader(
+                        new java.io.InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        output.append(line).append("\n");
+                        streamingOutput.appendLine(line);
+                    }
+                }
+                process.waitFor();
+            } catch (Exception ex) {
+                output.append("Build failed: ").append(ex.getMessage()).append("\n");
+            }
+            SwingUtilities.invokeLater(() -> onBuilt.accept(output.toString()));
+        });
+    }
+
+    void attachBuild(String buildOutput, Runnable onAttached) {
+        double buildSeconds = (System.currentTimeMillis() - startTime) / 1000.0;
+        final String buildResult = "Build completed in " + timerFormat.format(buildSeconds) + "s\n\n" + buildOutput;
+        String attachCode = getAttachCode();
+        if (attachCode == null || kernelClient == null) {
+            isExecuting = false;
+            if (executionTimer != null) {
+                executionTimer.stop();
+                executionTimer = null;
+            }
+            setFormattedOutput(buildResult);
+            onAttached.run();
+            return;
+        }
+
+        
+        kernelClient.executeCode(attachCode)
+            .handle((result, ex) -> {
+                SwingUtilities.invokeLater(() -> {
+                    isExecuting = false;
+                    if (executionTimer != null) {
+                        executionTimer.stop();
+                        executionTimer = null;
+                    }
+                    setFormattedOutput(buildResult + "\n" + (ex != null ? "Error: " + ex.getMessage() : result));
+                });
+                return null;
+            });
+        onAttached.run();
+    }
+
+    private String getAttachCode() {
+        String userCode = codeArea.getText();
+        String dir = currentDirectory.getAbsolutePath().replace("\\", "\\\\");
+        StringBuilder attach = new StringBuilder();
+        if ("Nim".equals(selectedLanguage)) {
+            attach.append("import os\n");
+            attach.append("import sys\n");
+            attach.append("import hashlib\n");
+            attach.append("import importlib.util\n");
+            attach.append("import platform\n\n");
+            appendModuleName(attach, userCode, "nimlib_");
+            attach.append("os.chdir(r'").append(dir).append("')\n");
+            attach.append("_system = platform.system().lower()\n");
+            attach.append("_lib_ext = 'pyd' if _system == 'windows' else ('dylib' if _system == 'darwin' else 'so')\n");
+            attach.append("lib_file_path = os.path.join(os.getcwd(), f'{module_name}.{_lib_ext}')\n");
+            attach.append("if os.path.exists(lib_file_path):\n");
+            attach.append("    if module_name in sys.modules:\n");
+            attach.append("        del sys.modules[module_name]\n");
+            attach.append("    spec = importlib.util.spec_from_file_location(module_name, lib_file_path)\n");
+            attach.append("    nim_module = importlib.util.module_from_spec(spec)\n");
+            attach.append("    spec.loader.exec_module(nim_module)\n");
+            attach.append("    sys.modules[module_name] = nim_module\n");
+            attach.append("    print(f\"Nim module '{module_name}' loaded into the kernel\")\n");
+            attach.append("else:\n");
+            attach.append("    nim_module = None\n");
+            attach.append("    print(f\"Nim library not found at {lib_file_path}\")\n");
+            return attach.toString();
+        }
+        if (selectedLanguage.startsWith("Futhark")) {
+            attach.append("import os\n");
+            attach.append("import sys\n");
+            attach.append("import hashlib\n");
+            attach.append("import importlib\n\n");
+            appendModuleName(attach, userCode.replace("\\", "\\\\"), "futhark_cell_");
+            attach.append("current_dir = r'").append(dir).append("'\n");
+            attach.append("os.chdir(current_dir)\n");
+            attach.append("if current_dir not in sys.path:\n");
+            attach.append("    sys.path.insert(0, current_dir)\n");
+            attach.append("importlib.invalidate_caches()\n");
+            attach.append("try:\n");
+            attach.append("    from futhark_ffi import Futhark\n");
+            attach.append("    globals()[module_name] = Futhark(importlib.import_module(f'_{module_name}'))\n");
+            attach.append("    print(f\"Futhark instance available as: {module_name}\")\n");
+            attach.append("except Exception as e:\n");
+            attach.append("    print(f\"Error loading Futhark module: {e}\")\n");
+            return attach.toString();
+        }
+        return null;
+    }
+
+    private void appendModuleName(StringBuilder sb, String codeLiteral, String hashPrefix) {
+        if (!customOutputFilename.isEmpty()) {
+            String moduleName = customOutputFilename;
+            if (moduleName.contains(".")) {
+                moduleName = moduleName.substring(0, moduleName.lastIndexOf('.'));
+            }
+            sb.append("module_name = '").append(moduleName).append("'\n");
+        } else {
+            sb.append("cell_hash = hashlib.md5('''").append(codeLiteral).append("'''.encode()).hexdigest()[:8]\n");
+            sb.append("module_name = f'").append(hashPrefix).append("{cell_hash}'\n");
+        }
+    }
+
     public void stopExecution() {
         isExecuting = false;
         if (executionTimer != null) {
@@ -5815,10 +6931,41 @@ class CodeCell extends NotebookCell {
                     "except ImportError:\n" +
                     "    pass\n" +
                     "\n" +
-                    "# Function to print HTML table for DataFrames\n" +
+                    "# DataFrames are sent as a columnar payload and paged on demand by the IDE\n" +
+                    "import json as _sigmaxiom_json\n" +
+                    "import uuid as _sigmaxiom_uuid\n" +
+                    "if '_sigmaxiom_tables' not in globals():\n" +
+                    "    _sigmaxiom_tables = {}\n" +
+                    "\n" +
+                    "def _sigmaxiom_table_columns(frame, offset, count):\n" +
+                    "    page = frame.iloc[offset:offset + count]\n" +
+                    "    columns = [[str(v) for v in page.index]]\n" +
+                    "    for position in range(page.shape[1]):\n" +
+                    "        values = page.iloc[:, position]\n" +
+                    "        missing = values.isna().tolist()\n" +
+                    "        columns.append([None if gap else (v if isinstance(v, (bool, int, float, str)) else str(v))\n" +
+                    "                        for v, gap in zip(values.tolist(), missing)])\n" +
+                    "    return columns\n" +
+                    "\n" +
+                    "def _sigmaxiom_table_page(token, offset, count):\n" +
+                    "    frame = _sigmaxiom_tables.get(token)\n" +
+                    "    if frame is None:\n" +
+                    "        print(_sigmaxiom_json.dumps({'token': token, 'missing': True}))\n" +
+                    "        return\n" +
+                    "    print(_sigmaxiom_json.dumps({'token': token, 'offset': offset,\n" +
+                    "                                 'data': _sigmaxiom_table_columns(frame, offset, count)}))\n" +
+                    "\n" +
                     "def print_df(df):\n" +
                     "    if 'pd' in globals() and isinstance(df, pd.DataFrame):\n" +
-                    "        print(df.to_html(border=1))\n" +
+                    "        token = _sigmaxiom_uuid.uuid4().hex\n" +
+                    "        _sigmaxiom_tables[token] = df\n" +
+                    "        while len(_sigmaxiom_tables) > 16:\n" +
+                    "            _sigmaxiom_tables.pop(next(iter(_sigmaxiom_tables)))\n" +
+                    "        payload = {'token': token, 'rows': len(df), 'index': str(df.index.name or ''),\n" +
+                    "                   'columns': [str(c) for c in df.columns], 'dtypes': [str(t) for t in df.dtypes],\n" +
+                    "                   'offset': 0, 'data': _sigmaxiom_table_columns(df, 0, " + DataFrameTableModel.PAGE_SIZE + ")}\n" +
+                    "        display({'" + DataFrameTableModel.TABLE_MIME_TYPE + "': _sigmaxiom_json.dumps(payload),\n" +
+                    "                 'text/plain': f'[DataFrame: {len(df)} rows x {len(df.columns)} columns]'}, raw=True)\n" +
                     "    else:\n" +
                     "        print(df)\n" +
                     "\n" +
@@ -5861,44 +7008,21 @@ class CodeCell extends NotebookCell {
     }
     
     
-    private boolean displayHTMLTable(String result) {
-        
-        if (result.contains("<table") && result.contains("</table>")) {
-            
-            StringBuilder html = new StringBuilder();
-            html.append("<html><head><style>\n");
-            html.append("body { background-color: #101035; color: white; font-family: monospace; }\n");
-            html.append("table { border-collapse: collapse; margin: 10px 0; }\n");
-            html.append("th { background: #2a2a55; color: white; padding: 6px 10px; text-align: left; border: 1px solid #3a3a75; }\n");
-            html.append("td { padding: 6px 10px; border: 1px solid #3a3a75; }\n");
-            html.append("tr:nth-child(even) { background-color: #1a1a45; }\n");
-            html.append("</style></head><body>\n");
-            html.append(result);
-            html.append("</body></html>");
-            
-            
-            setOutputText(html.toString(), true);
-            
-            
-            if (visualPanel != null) {
-                visualPanel.clearVisualization();
-            }
-            
-            return true; 
-        }
-        return false; 
-    }
-
     public void setCurrentDirectory(File directory) {
         this.currentDirectory = directory;
     }
 
+    public File getCurrentDirectory() {
+        return currentDirectory;
+    }
+
     
     private String generateCppWrapper(String cppCode) {
         StringBuilder wrapper = new StringBuilder();
         wrapper.append("import os\n");
         wrapper.append("import subprocess\n");
         wrapper.append("import hashlib\n\n");
+        wrapper.append(BuildCache.pythonHelpers());
         
         
         String filename;
@@ -5931,8 +7055,11 @@ class CodeCell extends NotebookCell {
         wrapper.append("# Compile the C++ code\n");
         wrapper.append("output_path = cpp_file_path.replace('.cpp', '')\n");
         wrapper.append("compile_cmd = ['g++', cpp_file_path, '-o', output_path, '-std=c++17']\n");
+        wrapper.append("with open(cpp_file_path) as cpp_file:\n");
+        wrapper.append("    cache_key = _sigmaxiom_build.key('C++', compile_cmd[4:], ['g++', '--version'], cpp_file.read(), os.path.basename(output_path),\n");
+        wrapper.append("        *_sigmaxiom_build.dependencies(cpp_file_path, _sigmaxiom_build.C_INCLUDE))\n");
         wrapper.append("try:\n");
-        wrapper.append("    compile_process = subprocess.run(compile_cmd, capture_output=True, text=True)\n");
+        wrapper.append("    compile_process = _sigmaxiom_build.run(cache_key, current_dir, compile_cmd, [os.path.basename(output_path)])\n");
         wrapper.append("    if compile_process.returncode != 0:\n");
         wrapper.append("        print(f\"Compilation error:\\n{compile_process.stderr}\")\n");
         wrapper.append("    else:\n");
@@ -5950,6 +7077,7 @@ class CodeCell extends NotebookCell {
         wrapper.append("import os\n");
         wrapper.append("import subprocess\n");
         wrapper.append("import hashlib\n\n");
+        wrapper.append(BuildCache.pythonHelpers());
         
         
         String filename;
@@ -5982,8 +7110,11 @@ class CodeCell extends NotebookCell {
         wrapper.append("# Compile the CUDA code\n");
         wrapper.append("output_path = cuda_file_path.replace('.cu', '')\n");
         wrapper.append("compile_cmd = ['nvcc', cuda_file_path, '-o', output_path]\n");
+        wrapper.append("with open(cuda_file_path) as cuda_file:\n");
+        wrapper.append("    cache_key = _sigmaxiom_build.key('CUDA', compile_cmd[4:], ['nvcc', '--version'], cuda_file.read(), os.path.basename(output_path),\n");
+        wrapper.append("        *_sigmaxiom_build.dependencies(cuda_file_path, _sigmaxiom_build.C_INCLUDE))\n");
         wrapper.append("try:\n");
-        wrapper.append("    compile_process = subprocess.run(compile_cmd, capture_output=True, text=True)\n");
+        wrapper.append("    compile_process = _sigmaxiom_build.run(cache_key, current_dir, compile_cmd, [os.path.basename(output_path)])\n");
         wrapper.append("    if compile_process.returncode != 0:\n");
         wrapper.append("        print(f\"Compilation error:\\n{compile_process.stderr}\")\n");
         wrapper.append("    else:\n");
@@ -6003,6 +7134,7 @@ class CodeCell extends NotebookCell {
         wrapper.append("import importlib.util\n");
         wrapper.append("import sys\n");
         wrapper.append("import platform\n\n");
+        wrapper.append(BuildCache.pythonHelpers());
         
         
         wrapper.append("def get_lib_ext():\n");
@@ -6068,10 +7200,11 @@ class CodeCell extends NotebookCell {
         
         wrapper.append("    # Compile the Nim code as a Python-importable library using absolute paths\n");
         wrapper.append("    compile_cmd = ['nim', 'c', '-d:release', '--opt:speed', '--app:lib', '--threads:on', f'--out:{lib_file_path}', nim_file_path]\n");
+        wrapper.append("    cache_key = _sigmaxiom_build.key('Nim', compile_cmd[1:6], ['nim', '--version'], nim_code, module_name, get_lib_ext())\n");
         wrapper.append("    try:\n");
         wrapper.append("        print(\"Compiling Nim code as Python library...\")\n");
         wrapper.append("        print(f\"Command: {' '.join(compile_cmd)}\")\n");
-        wrapper.append("        compile_process = subprocess.run(compile_cmd, capture_output=True, text=True)\n");
+        wrapper.append("        compile_process = _sigmaxiom_build.run(cache_key, work_dir, compile_cmd, [os.path.basename(lib_file_path)])\n");
         wrapper.append("        if compile_process.returncode != 0:\n");
         wrapper.append("            print(f\"Compilation error:\\n{compile_process.stderr}\")\n");
         wrapper.append("            return None\n");
@@ -6146,6 +7279,7 @@ class CodeCell extends NotebookCell {
         wrapper.append("import numpy as np\n");
         wrapper.append("import importlib.util\n");
         wrapper.append("import sys\n\n");
+        wrapper.append(BuildCache.pythonHelpers());
         
         
         if (!customOutputFilename.isEmpty()) {
@@ -6179,8 +7313,15 @@ class CodeCell extends NotebookCell {
         wrapper.append("compile_cmd = ['futhark', '").append(backend).append("', '--library', fut_file_path]\n");
         wrapper.append("print(f\"Compiling with command: {' '.join(compile_cmd)}\")\n\n");
         
+        wrapper.append("with open(fut_file_path) as fut_file:\n");
+        wrapper.append("    cache_key = _sigmaxiom_build.key('Futhark', compile_cmd[1:3], ['futhark', '--version'], fut_file.read(), module_name,\n");
+        wrapper.append("        *_sigmaxiom_build.dependencies(fut_file_path, _sigmaxiom_build.FUTHARK_IMPORT, '.fut'))\n");
+        wrapper.append("cache_hit = _sigmaxiom_build.fetch(cache_key, current_dir)\n\n");
         wrapper.append("try:\n");
-        wrapper.append("    compile_process = subprocess.run(compile_cmd, capture_output=True, text=True)\n");
+        wrapper.append("    if cache_hit:\n");
+        wrapper.append("        compile_process = subprocess.CompletedProcess(compile_cmd, 0, '', '')\n");
+        wrapper.append("    else:\n");
+        wrapper.append("        compile_process = subprocess.run(compile_cmd, capture_output=True, text=True)\n");
         wrapper.append("    if compile_process.returncode != 0:\n");
         wrapper.append("        print(f\"Compilation error:\\n{compile_process.stderr}\")\n");
         wrapper.append("    else:\n");
@@ -6190,10 +7331,15 @@ class CodeCell extends NotebookCell {
         wrapper.append("        build_cmd = ['build_futhark_ffi', module_name]\n");
         wrapper.append("        print(f\"Building FFI wrapper with: {' '.join(build_cmd)}\")\n");
         wrapper.append("        \n");
-        wrapper.append("        build_process = subprocess.run(build_cmd, capture_output=True, text=True, cwd=current_dir)\n");
+        wrapper.append("        if cache_hit:\n");
+        wrapper.append("            build_process = subprocess.CompletedProcess(build_cmd, 0, '', '')\n");
+        wrapper.append("        else:\n");
+        wrapper.append("            build_process = subprocess.run(build_cmd, capture_output=True, text=True, cwd=current_dir)\n");
         wrapper.append("        if build_process.returncode != 0:\n");
         wrapper.append("            print(f\"FFI build error:\\n{build_process.stderr}\")\n");
         wrapper.append("        else:\n");
+        wrapper.append("            if not cache_hit:\n");
+        wrapper.append("                _sigmaxiom_build.store(cache_key, current_dir, _sigmaxiom_build.artifacts(current_dir, f'{module_name}.', f'_{module_name}.'))\n");
         wrapper.append("            print(f\"FFI wrapper built successfully\")\n");
         wrapper.append("            \n");
         wrapper.append("            # Try to import and use the module\n");
@@ -6269,6 +7415,7 @@ class CodeCell extends NotebookCell {
         wrapper.append("import subprocess\n");
         wrapper.append("import hashlib\n");
         wrapper.append("import re\n\n");
+        wrapper.append(BuildCache.pythonHelpers());
         
         
         wrapper.append("# Try to extract the class name from the code\n");
@@ -6312,8 +7459,10 @@ class CodeCell extends NotebookCell {
         
         wrapper.append("# Compile the Java code\n");
         wrapper.append("compile_cmd = ['javac', java_file_path]\n");
+        wrapper.append("cache_key = _sigmaxiom_build.key('Java', [], ['javac', '-version'], wrapped_code, class_name)\n");
         wrapper.append("try:\n");
-        wrapper.append("    compile_process = subprocess.run(compile_cmd, capture_output=True, text=True, cwd=current_dir)\n");
+        wrapper.append("    compile_process = _sigmaxiom_build.run(cache_key, current_dir, compile_cmd,\n");
+        wrapper.append("        lambda: _sigmaxiom_build.artifacts(current_dir, f'{class_name}.class', f'{class_name}$'), cwd=current_dir)\n");
         wrapper.append("    if compile_process.returncode != 0:\n");
         wrapper.append("        print(f\"Compilation error:\\n{compile_process.stderr}\")\n");
         wrapper.append("    else:\n");
@@ -6462,7 +7611,7 @@ class CodeCell extends NotebookCell {
                 "results = check_java_code(\"\"\"" + codeEscaped + "\"\"\")\n" +
                 "print(json.dumps(results))\n";
             
-            kernelClient.executeCode(checkCode)
+            runCheckScript(checkCode)
                 .thenAccept(result -> SwingUtilities.invokeLater(() -> {
                     try {
                         String jsonStr = result.trim();
@@ -6576,7 +7725,7 @@ class CodeCell extends NotebookCell {
                 "results = check_r_code(\"\"\"" + codeEscaped + "\"\"\")\n" +
                 "print(json.dumps(results))\n";
             
-            kernelClient.executeCode(checkCode)
+            runCheckScript(checkCode)
                 .thenAccept(result -> SwingUtilities.invokeLater(() -> {
                     try {
                         String jsonStr = result.trim();
@@ -6602,175 +7751,191 @@ class CodeCell extends NotebookCell {
         }
     }
 
-    private void setOutputText(String text, boolean isHtml) {
-        
-        if (isHtml) {
-            
-            lastOutputText = text.replaceAll("<[^>]*>", "").replaceAll("&nbsp;", " ")
-                                .replaceAll("&lt;", "<").replaceAll("&gt;", ">")
-                                .replaceAll("&amp;", "&").replaceAll("&quot;", "\"");
-        } else {
-            lastOutputText = text;
+    private void finishStreamedOutput(String status) {
+        streamingOutput.flush();
+        OutputStore store = outputViewer.getStore();
+        if (store.getByteLength() <= OutputFormatter.LARGE_OUTPUT_BYTES) {
+            setFormattedOutput(status + "\n\n" + store.getText().trim());
+            return;
         }
+
         
+        formatGeneration++;
+        htmlOutputSource = null;
+        streamingOutput.end();
+        store.append("\n" + status + "\n");
+        outputViewer.contentChanged();
+        executionStatusLabel.setVisible(false);
+        copyOutputButton.setVisible(true);
+        markModified();
+    }
+
+    private void setOutputText(String text) {
         
-        boolean hasOutput = text != null && !text.trim().isEmpty() && 
-                        !text.equals("Executing...") && 
-                        !text.startsWith("Executing... (");
-        copyOutputButton.setVisible(hasOutput);
-        
-        
-        final String content = text;
-        final boolean useHtml = isHtml;
-        
+        htmlOutputSource = null;
+        streamingOutput.end();
+        executionStatusLabel.setVisible(false);
+        copyOutputButton.setVisible(text != null && !text.trim().isEmpty());
+
+        outputViewer.getStore().setText(text);
+        outputViewer.contentChanged();
+        showOutputView(outputViewer);
+    }
+
+    private void setHtmlOutput(HTMLDocument document, String plainText) {
+        streamingOutput.end();
+        executionStatusLabel.setVisible(false);
+        copyOutputButton.setVisible(plainText != null && !plainText.trim().isEmpty());
+
         
-        if (outputUpdateTimer != null && outputUpdateTimer.isRunning()) {
-            outputUpdateTimer.stop();
+        outputViewer.getStore().setText(plainText);
+        outputViewer.contentChanged();
+        if (!"text/html".equals(outputTextArea.getContentType())) {
+            outputTextArea.setContentType("text/html");
         }
-        
-        
+        outputTextArea.setDocument(document);
+        showOutputView(outputTextArea);
+    }
+
+    private void showOutputView(JComponent view) {
+        if (outputScrollPane.getViewport().getView() != view) {
+            outputScrollPane.setViewportView(view);
+        }
+        outputArea.revalidate();
+        outputArea.repaint();
+    }
+
+    private JScrollPane createTableOutputPane() {
+        tableOutput = new JTable();
+        tableOutput.setBackground(new Color(16, 16, 53));
+        tableOutput.setForeground(Color.WHITE);
+        tableOutput.setSelectionBackground(new Color(40, 40, 100));
+        tableOutput.setSelectionForeground(Color.WHITE);
+        tableOutput.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 14));
+        tableOutput.setRowHeight(22);
+        tableOutput.setGridColor(new Color(58, 58, 117));
+        tableOutput.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+        tableOutput.setFillsViewportHeight(true);
+
+        JTableHeader header = tableOutput.getTableHeader();
+        header.setBackground(new Color(42, 42, 85));
+        header.setForeground(Color.WHITE);
+        header.setFont(new Font(Font.MONOSPACED, Font.BOLD, 14));
+        header.setReorderingAllowed(false);
+
+        tableOutputPane = new JScrollPane(tableOutput);
+        tableOutputPane.setBackground(new Color(13, 13, 35));
+        tableOutputPane.setBorder(BorderFactory.createLineBorder(new Color(40, 40, 100), 1));
+        tableOutputPane.setPreferredSize(new Dimension(300, 320));
+        tableOutputPane.setVisible(false);
+        return tableOutputPane;
+    }
+
+    private void showTableOutput(String payload, boolean modified) {
+        DataFrameTableModel model;
         try {
-            outputTextArea.getDocument().remove(0, outputTextArea.getDocument().getLength());
+            model = DataFrameTableModel.fromPayload(payload, (token, offset, count) -> {
+                JupyterKernelClient client = kernelClient;
+                if (client == null) {
+                    CompletableFuture<String> missing = new CompletableFuture<>();
+                    missing.completeExceptionally(new IllegalStateException("No kernel client available"));
+                    return missing;
+                }
+                return client.executeSilently("_sigmaxiom_table_page('" + token + "', " + offset + ", " + count + ")");
+            });
         } catch (Exception e) {
-            
+            System.err.println("Error reading table output: " + e.getMessage());
+            return;
         }
-        
-        
-        outputTextArea.setContentType(useHtml ? "text/html" : "text/plain");
-        outputTextArea.setText(content);
-        
-        
         SwingUtilities.invokeLater(() -> {
-            outputTextArea.revalidate();
-            outputTextArea.repaint();
+            closeTableModel();
+            tableOutput.setModel(model);
+            FontMetrics metrics = tableOutput.getFontMetrics(tableOutput.getFont());
+            int sampleRows = Math.min(model.getRowCount(), 50);
+            for (int column = 0; column < model.getColumnCount(); column++) {
+                int width = metrics.stringWidth(model.getColumnName(column));
+                for (int row = 0; row < sampleRows; row++) {
+                    width = Math.max(width, metrics.stringWidth(String.valueOf(model.getValueAt(row, column))));
+                }
+                tableOutput.getColumnModel().getColumn(column).setPreferredWidth(Math.min(400, width + 24));
+            }
+            tableOutputPane.setToolTipText(model.getRowCount() + " rows x " + (model.getColumnCount() - 1) + " columns");
+            tablePayload = payload;
+            tableOutputPane.setVisible(true);
             outputArea.revalidate();
             outputArea.repaint();
+            if (modified) {
+                markModified();
+            }
         });
+    }
 
-        if (!useHtml) {
-            outputTextArea.putClientProperty(JEditorPane.W3C_LENGTH_UNITS, Boolean.FALSE);
-            outputTextArea.putClientProperty(JEditorPane.HONOR_DISPLAY_PROPERTIES, Boolean.TRUE);
+    private void closeTableModel() {
+        if (tableOutput.getModel() instanceof DataFrameTableModel) {
+            ((DataFrameTableModel) tableOutput.getModel()).close();
         }
+    }
 
-        
-        String finalContent = content; 
-        if (content != null && !content.trim().isEmpty() && !content.equals("Executing...")) {
-            if (useHtml) {
-                
-                
-                if (finalContent.toLowerCase().contains("</body>")) {
-                    finalContent = finalContent.replaceAll("(?i)</body>", "<br><br></body>"); 
-                } else {
-                    finalContent += "<br><br>"; 
-                }
-            } else {
-                
-                finalContent += "\n\n"; 
-            }
+    private void clearTableOutput() {
+        tablePayload = null;
+        if (tableOutputPane != null && tableOutputPane.isVisible()) {
+            closeTableModel();
+            tableOutput.setModel(new DefaultTableModel());
+            tableOutputPane.setVisible(false);
+            outputArea.revalidate();
         }
-        
-
-        outputTextArea.setText(finalContent); 
+    }
 
-        
-        outputUpdateTimer = new Timer(100, e -> {
-            try {
-                
-                
-                
-            } catch (Exception ex) {
-                ex.printStackTrace();
-            }
-        });
-        outputUpdateTimer.setRepeats(false);
-        outputUpdateTimer.start();
-        
-        SwingUtilities.invokeLater(() -> {
-            outputTextArea.revalidate();
-            outputTextArea.repaint();
-            outputArea.revalidate();
-            outputArea.repaint();
-        });
+    void releaseOutput() {
+        streamingOutput.end();
+        outputViewer.getStore().close();
     }
     
     
     private void setFormattedOutput(String result) {
-        
-        if (displayHTMLTable(result)) {
-            return; 
-        }
-        
-        
-        if (result.contains("Traceback") || result.contains("Error:")) {
-            
-            StringBuilder html = new StringBuilder();
-            html.append("<html><body style='color:#E6E6E6; font-family:monospace'>");
-            
-            
-            String[] lines = result.split("\n");
-            for (String line : lines) {
-                
-                String escapedLine = line.replace("&", "&amp;")
-                                        .replace("<", "&lt;")
-                                        .replace(">", "&gt;");
-                
-                if (line.contains("Error:") || line.contains("Exception:")) {
-                    
-                    html.append("<div style='color:#FF6B68;'>").append(escapedLine).append("</div>");
-                } else if (line.trim().startsWith("File \"") || line.contains("line ")) {
-                    
-                    html.append("<div style='color:#82AAFF;'>").append(escapedLine).append("</div>");
-                } else {
-                    
-                    html.append("<div>").append(escapedLine).append("</div>");
-                }
+        setFormattedOutput(result, true);
+    }
+
+    private CompletableFuture<Void> setFormattedOutput(String result, boolean modified) {
+        final long generation = ++formatGeneration;
+        CompletableFuture<Void> installed = new CompletableFuture<>();
+        OutputFormatter.formatAsync(result).whenComplete((formatted, ex) -> SwingUtilities.invokeLater(() -> {
+            installed.complete(null);
+            if (generation != formatGeneration) {
+                return;
             }
-            
-            html.append("</body></html>");
-            
-            
-            setOutputText(html.toString(), true);
-            
-            
-            visualPanel.clearVisualization();
-        } else {
-            
-            boolean foundVisualization = false;
-            
-            
-            Pattern base64Pattern = Pattern.compile("data:image/\\w+;base64,[A-Za-z0-9+/=]+");
-            Matcher matcher = base64Pattern.matcher(result);
-            
-            if (matcher.find()) {
-                
-                String base64Data = matcher.group(0);
-                
-                
-                visualPanel.displayVisualizationFromBase64(base64Data);
-                
-                
-                result = result.replace(base64Data, "[Image visualization displayed below]");
-                foundVisualization = true;
+            if (ex != null) {
+                System.err.println("Error formatting output: " + ex.getMessage());
+                setOutputText(result);
+            } else {
+                htmlOutputSource = formatted.getKind() == OutputFormatter.Kind.TABLE ? result : null;
+                installFormattedOutput(formatted, modified);
             }
-            
-            
-            if (!foundVisualization) {
-                visualPanel.clearVisualization();
+            if (modified) {
+                markModified();
             }
-            
-            
-            if (result.contains("<table") && result.contains("</table>")) {
-                String html = "<html><head><style>" +
-                       "body{background:#101035; color:white; font-family:monospace;}" +
-                       "table{border-collapse:collapse; margin:10px 0;}" +
-                       "th{background:#2a2a55; color:white; padding:4px 8px; border:1px solid #3a3a75;}" +
-                       "td{padding:4px 8px; border:1px solid #3a3a75;}" +
-                       "</style></head><body>" + result + "</body></html>";
-                setOutputText(html, true);
-            } else {
-                setOutputText(result, false);
+        }));
+        return installed;
+    }
+
+    private void installFormattedOutput(OutputFormatter.FormattedOutput formatted, boolean modified) {
+        
+        if (visualPanel != null) {
+            if (!formatted.getBase64Images().isEmpty()) {
+                CompletableFuture<Void> added = visualPanel.addFiguresFromBase64(formatted.getBase64Images());
+                if (modified) {
+                    added.thenRun(this::markModified);
+                }
+            } else if (formatted.getKind() != OutputFormatter.Kind.TEXT || !receivedDisplayImage) {
+                visualPanel.clearVisualization();
             }
         }
+
+        if (formatted.isHtml()) {
+            setHtmlOutput(formatted.getHtmlDocument(), formatted.getPlainText());
+        } else {
+            setOutputText(formatted.getPlainText());
+        }
     }
     
     public void setKernelClient(JupyterKernelClient kernelClient) {
@@ -6806,6 +7971,7 @@ class CodeCell extends NotebookCell {
     private void deleteCell() {
         Container parent = getParent();
         if (parent != null) {
+            releaseOutput();
             parent.remove(this);
             parent.revalidate();
             parent.repaint();
@@ -6819,6 +7985,7 @@ class CodeCell extends NotebookCell {
         
         
         isExecuting = true;
+        resetStreamedOutput();
         
         
         final boolean wasErrorCheckingEnabled = errorChecker != null ? errorChecker.isCheckingEnabled : false;
@@ -6827,7 +7994,7 @@ class CodeCell extends NotebookCell {
         }
         
         
-        setOutputText("Executing...", false);
+        beginStreamingOutput("Queued...");
         
         
         if (visualPanel != null) {
@@ -6842,22 +8009,6 @@ class CodeCell extends NotebookCell {
         
         
         startTime = System.currentTimeMillis();
-        executionTimer = new Timer(100, e -> {
-            if (isExecuting) {
-                long elapsedTime = System.currentTimeMillis() - startTime;
-                double seconds = elapsedTime / 1000.0;
-                SwingUtilities.invokeLater(() -> {
-                    if (isExecuting) { 
-                        setOutputText("Executing... (" + timerFormat.format(seconds) + "s)", false);
-                    }
-                });
-            } else {
-                
-                ((Timer)e.getSource()).stop();
-            }
-        });
-        executionTimer.setRepeats(true);
-        executionTimer.start();
         
         if (kernelClient != null) {
             
@@ -6909,7 +8060,7 @@ class CodeCell extends NotebookCell {
                 }
             }
             
-            kernelClient.executeCode(code)
+            kernelClient.executeCode(code, outputListener)
                 .thenAccept(result -> SwingUtilities.invokeLater(() -> {
                     
                     isExecuting = false;
@@ -6923,8 +8074,7 @@ class CodeCell extends NotebookCell {
                     double seconds = executionTime / 1000.0;
                     
                     
-                    String resultWithTime = "Execution completed in " + timerFormat.format(seconds) + "s\n\n" + result;
-                    setFormattedOutput(resultWithTime);
+                    finishStreamedOutput("Execution completed in " + timerFormat.format(seconds) + "s");
                     
                     
                     if (errorChecker != null && wasErrorCheckingEnabled) {
@@ -6969,7 +8119,7 @@ class CodeCell extends NotebookCell {
                 executionTimer.stop();
                 executionTimer = null;
             }
-            setOutputText("Error: No kernel client available", false);
+            setOutputText("Error: No kernel client available");
             
             if (errorChecker != null && wasErrorCheckingEnabled) {
                 errorChecker.setCheckingEnabled(true);
@@ -6988,13 +8138,12 @@ class CodeCell extends NotebookCell {
     
     
     public void fromJSON(JSONObject cellObj) {
+        fromJSON(cellObj, null);
+    }
+
+    public void fromJSON(JSONObject cellObj, OutputSidecar sidecar) {
         
-        JSONArray sourceArray = cellObj.getJSONArray("source");
-        StringBuilder sourceText = new StringBuilder();
-        for (int j = 0; j < sourceArray.length(); j++) {
-            sourceText.append(sourceArray.getString(j));
-        }
-        setCodeText(sourceText.toString());
+        setCodeText(NotebookCodec.joinMultiline(cellObj.opt("source")));
         
         
         if (cellObj.has("metadata")) {
@@ -7061,6 +8210,126 @@ class CodeCell extends NotebookCell {
                 customFilenameField.setText(customOutputFilename);
             }
         }
+        
+        
+        if (!cellObj.isNull("execution_count") && cellObj.has("execution_count")) {
+            executionCount = cellObj.optInt("execution_count");
+        }
+        JSONArray outputs = cellObj.optJSONArray("outputs");
+        if (outputs != null && outputs.length() > 0) {
+            restoringOutputs = outputs;
+            restoringSidecar = sidecar;
+            restoreOutputs(outputs, sidecar);
+        }
+    }
+
+    private void restoreOutputs(JSONArray outputs, OutputSidecar sidecar) {
+        StringBuilder text = new StringBuilder();
+        String html = null;
+        File storedText = null;
+        List<Object> figureSources = new ArrayList<>();
+        
+        for (int i = 0; i < outputs.length(); i++) {
+            JSONObject output = outputs.optJSONObject(i);
+            if (output == null) {
+                continue;
+            }
+            String outputType = output.optString("output_type", "");
+            if ("stream".equals(outputType)) {
+                text.append(NotebookCodec.joinMultiline(output.opt("text")));
+                continue;
+            }
+            if ("error".equals(outputType)) {
+                JSONArray traceback = output.optJSONArray("traceback");
+                for (int j = 0; traceback != null && j < traceback.length(); j++) {
+                    text.append(traceback.optString(j).replaceAll("\u001B\\[[;\\d]*m", "")).append("\n");
+                }
+                continue;
+            }
+            JSONObject data = output.optJSONObject("data");
+            if (data == null) {
+                continue;
+            }
+            
+            JSONObject reference = data.optJSONObject(OutputSidecar.SIDECAR_MIME_TYPE);
+            if (reference != null) {
+                File file = sidecar != null ? sidecar.resolve(reference.optString("file", null)) : null;
+                if (file == null) {
+                    text.append(NotebookCodec.joinMultiline(data.opt("text/plain")));
+                } else if (reference.optString("mime", "").startsWith("image/")) {
+                    figureSources.add(file);
+                } else {
+                    storedText = file;
+                }
+            } else if (data.has(DataFrameTableModel.TABLE_MIME_TYPE)) {
+                showTableOutput(data.optString(DataFrameTableModel.TABLE_MIME_TYPE), false);
+            } else if (data.has("image/png") || data.has("image/jpeg") || data.has("image/gif")) {
+                String mimeType = data.has("image/png") ? "image/png" : data.has("image/jpeg") ? "image/jpeg" : "image/gif";
+                figureSources.add(NotebookCodec.joinMultiline(data.opt(mimeType)));
+            } else if (data.has("text/html")) {
+                html = NotebookCodec.joinMultiline(data.opt("text/html"));
+            } else if (data.has("text/plain")) {
+                text.append(NotebookCodec.joinMultiline(data.opt("text/plain")));
+            }
+        }
+        
+        List<CompletableFuture<Void>> restores = new ArrayList<>();
+        if (!figureSources.isEmpty() && visualPanel != null) {
+            receivedDisplayImage = true;
+            restores.add(visualPanel.addFiguresLater(() -> {
+                List<byte[]> figures = new ArrayList<>();
+                for (Object source : figureSources) {
+                    try {
+                        figures.add(source instanceof File ? Files.readAllBytes(((File) source).toPath())
+                                                            : Base64.getMimeDecoder().decode((String) source));
+                    } catch (IOException | IllegalArgumentException e) {
+                        System.err.println("Skipping stored figure: " + e.getMessage());
+                    }
+                }
+                return figures;
+            }));
+        }
+        
+        if (storedText != null) {
+            restores.add(restoreStoredText(storedText));
+        } else if (html != null) {
+            restores.add(setFormattedOutput(html, false));
+        } else if (text.length() > 0) {
+            restores.add(setFormattedOutput(text.toString(), false));
+        }
+        CompletableFuture.allOf(restores.toArray(new CompletableFuture<?>[0])).whenComplete((done, ex) -> SwingUtilities.invokeLater(() -> {
+            if (restoringOutputs == outputs) {
+                restoringOutputs = null;
+                restoringSidecar = null;
+            }
+        }));
+    }
+
+    private CompletableFuture<Void> restoreStoredText(File file) {
+        final long generation = ++formatGeneration;
+        OutputStore store = outputViewer.getStore();
+        store.clear();
+        return CompletableFuture.runAsync(() -> {
+            char[] buffer = new char[1 << 16];
+            try (java.io.Reader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                for (int read = in.read(buffer); read >= 0 && generation == formatGeneration; read = in.read(buffer)) {
+                    store.append(new String(buffer, 0, read));
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading stored output " + file.getName() + ": " + e.getMessage());
+            }
+        }).thenCompose(ignored -> {
+            CompletableFuture<Void> shown = new CompletableFuture<>();
+            SwingUtilities.invokeLater(() -> {
+                if (generation == formatGeneration) {
+                    copyOutputButton.setVisible(!store.isEmpty());
+                    outputViewer.contentChanged();
+                    showOutputView(outputViewer);
+                }
+                shown.complete(null);
+            });
+            return shown;
+        });
     }
 }
 
@@ -7077,6 +8346,14 @@ class MarkdownCell extends NotebookCell {
         markdownArea.setSyntaxEditingStyle(SyntaxConstants.SYNTAX_STYLE_MARKDOWN);
         markdownArea.setBackground(new Color(16, 16, 53));  
         markdownArea.setForeground(Color.WHITE);
+        markdownArea.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { markModified(); }
+            @Override
+            public void removeUpdate(DocumentEvent e) { markModified(); }
+            @Override
+            public void changedUpdate(DocumentEvent e) { markModified(); }
+        });
         
         RTextScrollPane scrollPane = new RTextScrollPane(markdownArea);
         
@@ -7179,6 +8456,20 @@ class MarkdownCell extends NotebookCell {
     public void setMarkdownText(String markdown) {
         markdownArea.setText(markdown);
     }
+
+    public JSONObject toJSON() {
+        return snapshotJSON().apply(null);
+    }
+
+    @Override
+    public Function<OutputSidecar, JSONObject> snapshotJSON() {
+        JSONObject cellObj = new JSONObject();
+        cellObj.put("id", getCellId());
+        cellObj.put("cell_type", "markdown");
+        cellObj.put("metadata", new JSONObject());
+        cellObj.put("source", NotebookCodec.splitMultiline(getMarkdownText()));
+        return sidecar -> cellObj;
+    }
 }
 
 
@@ -8486,6 +9777,9 @@ abstract class ErrorChecker {
     protected Timer checkTimer;
     protected boolean isCheckingEnabled = true;
     protected SyntaxErrorParser parser;
+    private final java.util.concurrent.atomic.AtomicLong generation = new java.util.concurrent.atomic.AtomicLong();
+    private volatile long resultGeneration = -1;
+    private volatile CompletableFuture<String> inFlight;
     
     public ErrorChecker(RSyntaxTextArea editor, JupyterKernelClient kernelClient) {
         this.editor = editor;
@@ -8540,6 +9834,9 @@ abstract class ErrorChecker {
     
     
     protected void addError(int line, int offset, int length, String message, SyntaxErrorParser.ErrorLevel level) {
+        if (resultGeneration != generation.get()) {
+            return;
+        }
         parser.addNotice(line, offset, length, message, level);
     }
     
@@ -8556,6 +9853,47 @@ abstract class ErrorChecker {
             return 0;
         }
     }
+
+    
+    protected CompletableFuture<String> runCheckScript(String script) {
+        Window window = SwingUtilities.getWindowAncestor(editor);
+        return track(window instanceof JupyterNotebookIDE
+            ? ((JupyterNotebookIDE) window).getLintService().submit(script)
+            : kernelClient.executeSilently(script));
+    }
+
+    protected CompletableFuture<String> track(CompletableFuture<String> check) {
+        inFlight = check;
+
+        
+        long checkGeneration = generation.get();
+        CompletableFuture<String> current = new CompletableFuture<>();
+        check.whenComplete((result, ex) -> {
+            if (generation.get() != checkGeneration) {
+                return;
+            }
+            resultGeneration = checkGeneration;
+            if (ex != null) {
+                current.completeExceptionally(ex);
+            } else {
+                current.complete(result);
+            }
+        });
+        return current;
+    }
+
+    public void supersede() {
+        generation.incrementAndGet();
+        CompletableFuture<String> check = inFlight;
+        if (check != null) {
+            inFlight = null;
+            check.cancel(true);
+        }
+    }
+
+    public CompletableFuture<String> getInFlightCheck() {
+        return inFlight;
+    }
 }
     class PythonFlake8Checker extends ErrorChecker {
         
@@ -8591,7 +9929,7 @@ abstract class ErrorChecker {
             
             
             String checkCode =
-            "import json, ast, tokenize, io, re, tempfile, subprocess, os\n" +
+            "import json, ast, tokenize, io, re, tempfile, subprocess, os, contextlib\n" +
             "\n" +
             "def ast_check(code):\n" +
             "    results = []\n" +
@@ -8609,7 +9947,57 @@ abstract class ErrorChecker {
             "        })\n" +
             "    return results\n" +
             "\n" +
+            "PYFLAKES_CODES = {\n" +
+            "    'UnusedImport': 'F401', 'ImportShadowedByLoopVar': 'F402', 'ImportStarUsed': 'F403',\n" +
+            "    'LateFutureImport': 'F404', 'ImportStarUsage': 'F405', 'FStringMissingPlaceholders': 'F541',\n" +
+            "    'MultiValueRepeatedKeyLiteral': 'F601', 'IsLiteral': 'F632', 'RedefinedWhileUnused': 'F811',\n" +
+            "    'UndefinedName': 'F821', 'UndefinedExport': 'F822', 'UndefinedLocal': 'F823',\n" +
+            "    'DuplicateArgument': 'F831', 'UnusedVariable': 'F841', 'ReturnOutsideFunction': 'F706',\n" +
+            "}\n" +
+            "\n" +
             "def flake8_check(code):\n" +
+            "    try:\n" +
+            "        from pyflakes import api as pyflakes_api\n" +
+            "    except ImportError:\n" +
+            "        return flake8_subprocess_check(code)\n" +
+            "    results = []\n" +
+            "    class FlakeCollector:\n" +
+            "        def unexpectedError(self, filename, message):\n" +
+            "            pass\n" +
+            "        def syntaxError(self, filename, message, lineno, offset, text):\n" +
+            "            pass\n" +
+            "        def flake(self, message):\n" +
+            "            code_val = PYFLAKES_CODES.get(type(message).__name__, 'F')\n" +
+            "            results.append({\n" +
+            "                'line': message.lineno - 1,\n" +
+            "                'column': getattr(message, 'col', 0),\n" +
+            "                'length': 1,\n" +
+            "                'message': code_val + ': ' + (message.message % message.message_args),\n" +
+            "                'type': 'error'\n" +
+            "            })\n" +
+            "    pyflakes_api.check(code, '<cell>', FlakeCollector())\n" +
+            "    try:\n" +
+            "        import pycodestyle\n" +
+            "        class StyleCollector(pycodestyle.BaseReport):\n" +
+            "            def error(self, line_number, offset, text, check):\n" +
+            "                code_val = super().error(line_number, offset, text, check)\n" +
+            "                if code_val:\n" +
+            "                    results.append({\n" +
+            "                        'line': line_number - 1,\n" +
+            "                        'column': offset,\n" +
+            "                        'length': 1,\n" +
+            "                        'message': code_val + ': ' + text[5:],\n" +
+            "                        'type': 'warning' if code_val.startswith('W') else 'error'\n" +
+            "                    })\n" +
+            "                return code_val\n" +
+            "        style = pycodestyle.StyleGuide(quiet=True, max_line_length=120, reporter=StyleCollector)\n" +
+            "        with contextlib.redirect_stdout(io.StringIO()):\n" +
+            "            pycodestyle.Checker('<cell>', lines=code.splitlines(True), options=style.options).check_all()\n" +
+            "    except ImportError:\n" +
+            "        pass\n" +
+            "    return results\n" +
+            "\n" +
+            "def flake8_subprocess_check(code):\n" +
             "    results = []\n" +
             "    try:\n" +
             "        with tempfile.NamedTemporaryFile(suffix='.py', delete=False) as tf:\n" +
@@ -8683,7 +10071,10 @@ abstract class ErrorChecker {
             "    return results\n" +
             "\n" +
             "def parso_check(code):\n" +
-            "    import parso\n" +
+            "    try:\n" +
+            "        import parso\n" +
+            "    except ImportError:\n" +
+            "        return []\n" +
             "    from parso.python.tree import ErrorLeaf, ErrorNode\n" +
             "    def collect_parso_errors(node, results=None):\n" +
             "        if results is None:\n" +
@@ -8712,7 +10103,7 @@ abstract class ErrorChecker {
             "print(check_all(\"\"\"" + codeEscaped + "\"\"\"))\n";
         
             
-            kernelClient.executeCode(checkCode)
+            runCheckScript(checkCode)
                 .thenAccept(result -> SwingUtilities.invokeLater(() -> {
                     try {
                         clearErrors();
@@ -8932,7 +10323,7 @@ abstract class ErrorChecker {
             System.out.println("Sending Nim check to kernel");
             
             
-            kernelClient.executeCode(checkCode)
+            runCheckScript(checkCode)
                 .thenAccept(result -> {
                     System.out.println("Nim check result received: " + result);
                     
@@ -9172,10 +10563,28 @@ abstract class ErrorChecker {
     }
 
     class FutharkChecker extends ErrorChecker {
+        private String documentName;
     
         public FutharkChecker(RSyntaxTextArea editor, JupyterKernelClient kernelClient) {
             super(editor, kernelClient);
         }
+
+        
+        private CompletableFuture<String> checkWithService(String code) {
+            Window window = SwingUtilities.getWindowAncestor(editor);
+            if (!(window instanceof JupyterNotebookIDE)) {
+                return null;
+            }
+            FutharkCheckService service = ((JupyterNotebookIDE) window).getFutharkCheckService();
+            if (!service.isAvailable()) {
+                return null;
+            }
+            if (documentName == null) {
+                documentName = service.newDocumentName();
+            }
+            CodeCell cell = (CodeCell) SwingUtilities.getAncestorOfClass(CodeCell.class, editor);
+            return track(service.check(code, cell != null ? cell.getCurrentDirectory() : null, documentName));
+        }
         
         @Override
         public void checkErrors() {
@@ -9283,12 +10692,16 @@ abstract class ErrorChecker {
                 "results = check_futhark_code(\"\"\"" + codeEscaped + "\"\"\")\n" +
                 "print(json.dumps(results))\n";
             
-            kernelClient.executeCode(checkCode)
+            CompletableFuture<String> check = checkWithService(code);
+            if (check == null) {
+                check = runCheckScript(checkCode);
+            }
+            check
                 .thenAccept(result -> SwingUtilities.invokeLater(() -> {
                     try {
                         String jsonStr = result.trim();
                         
-                        int jsonStart = jsonStr.lastIndexOf("[");
+                        int jsonStart = jsonStr.indexOf("[");
                         int jsonEnd = jsonStr.lastIndexOf("]");
                         if (jsonStart >= 0 && jsonEnd > jsonStart) {
                             jsonStr = jsonStr.substring(jsonStart, jsonEnd + 1);
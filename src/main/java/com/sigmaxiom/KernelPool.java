@@ -0,0 +1,162 @@
+package com.sigmaxiom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class KernelPool {
+
+    private static final long SHUTDOWN_WAIT_SECONDS = 10;
+
+    public interface KernelStarter {
+        JupyterKernelClient start(String kernelName) throws Exception;
+    }
+
+    private static class PooledKernel {
+        private final JupyterKernelClient client;
+        private final long readySince;
+
+        PooledKernel(JupyterKernelClient client) {
+            this.client = client;
+            this.readySince = System.currentTimeMillis();
+        }
+    }
+
+    private final KernelStarter starter;
+    private final int poolSize;
+    private final long ttlMillis;
+    private final Map<String, ConcurrentLinkedDeque<PooledKernel>> idleKernels = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> startingKernels = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor;
+    private volatile boolean shutdown = false;
+
+    public KernelPool(KernelStarter starter, int poolSize, long ttlMillis) {
+        this.starter = starter;
+        this.poolSize = Math.max(0, poolSize);
+        this.ttlMillis = ttlMillis;
+        this.executor = Executors.newScheduledThreadPool(2, r -> {
+            Thread t = new Thread(r, "Kernel-Pool-Thread");
+            t.setDaemon(true);
+            return t;
+        });
+        if (ttlMillis > 0) {
+            long sweepInterval = Math.max(1000, ttlMillis / 2);
+            executor.scheduleWithFixedDelay(this::evictExpired, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    public void warm(String kernelName) {
+        if (shutdown || poolSize == 0) {
+            return;
+        }
+        ConcurrentLinkedDeque<PooledKernel> idle = idleFor(kernelName);
+        AtomicInteger starting = startingKernels.computeIfAbsent(kernelName, k -> new AtomicInteger());
+        while (true) {
+            int reserved = starting.get();
+            if (idle.size() + reserved >= poolSize) {
+                return;
+            }
+            if (!starting.compareAndSet(reserved, reserved + 1)) {
+                continue;
+            }
+            try {
+                executor.execute(() -> startIdle(kernelName, idle, starting));
+            } catch (RejectedExecutionException e) {
+                starting.decrementAndGet();
+                return;
+            }
+        }
+    }
+
+    private void startIdle(String kernelName, ConcurrentLinkedDeque<PooledKernel> idle, AtomicInteger starting) {
+        try {
+            if (shutdown) {
+                return;
+            }
+            JupyterKernelClient client = starter.start(kernelName);
+            if (shutdown) {
+                client.close();
+            } else {
+                idle.addLast(new PooledKernel(client));
+                System.out.println("Kernel pool: warmed " + kernelName + " kernel (" + idle.size() + " ready)");
+            }
+        } catch (Exception e) {
+            System.err.println("Kernel pool: failed to start " + kernelName + " kernel: " + e.getMessage());
+        } finally {
+            starting.decrementAndGet();
+        }
+    }
+
+
+    public JupyterKernelClient acquire(String kernelName) throws Exception {
+        ConcurrentLinkedDeque<PooledKernel> idle = idleFor(kernelName);
+        PooledKernel pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (pooled.client.isKernelAlive()) {
+                System.out.println("Kernel pool: handing out warm " + kernelName + " kernel");
+                warm(kernelName);
+                return pooled.client;
+            }
+            closeAsync(pooled.client);
+        }
+
+        System.out.println("Kernel pool: no warm " + kernelName + " kernel, starting one now");
+        JupyterKernelClient client = starter.start(kernelName);
+        warm(kernelName);
+        return client;
+    }
+
+    private ConcurrentLinkedDeque<PooledKernel> idleFor(String kernelName) {
+        return idleKernels.computeIfAbsent(kernelName, k -> new ConcurrentLinkedDeque<>());
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, ConcurrentLinkedDeque<PooledKernel>> entry : idleKernels.entrySet()) {
+            for (PooledKernel pooled : entry.getValue()) {
+                if (now - pooled.readySince > ttlMillis && entry.getValue().remove(pooled)) {
+                    System.out.println("Kernel pool: evicting idle " + entry.getKey() + " kernel");
+                    pooled.client.close();
+                }
+            }
+        }
+    }
+
+    private void closeAsync(JupyterKernelClient client) {
+        try {
+            executor.execute(client::close);
+        } catch (RejectedExecutionException e) {
+            client.close();
+        }
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Kernel pool: kernels still starting after " + SHUTDOWN_WAIT_SECONDS + "s");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PooledKernel> remaining = new ArrayList<>();
+        for (ConcurrentLinkedDeque<PooledKernel> idle : idleKernels.values()) {
+            PooledKernel pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                remaining.add(pooled);
+            }
+        }
+        for (PooledKernel pooled : remaining) {
+            pooled.client.close();
+        }
+    }
+}
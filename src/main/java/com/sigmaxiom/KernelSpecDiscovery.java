@@ -0,0 +1,204 @@
+package com.sigmaxiom;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+public class KernelSpecDiscovery {
+
+    private static final Map<String, Map<String, JupyterKernelClient.KernelSpec>> CACHE = new ConcurrentHashMap<>();
+    private static final Set<Path> WATCHED_DIRS = ConcurrentHashMap.newKeySet();
+    private static final Map<Path, Set<Path>> AWAITED_CHILDREN = new ConcurrentHashMap<>();
+    private static WatchService watchService;
+
+    private KernelSpecDiscovery() {
+    }
+
+
+    public static Map<String, JupyterKernelClient.KernelSpec> discover(String envPath,
+            Function<String, Map<String, JupyterKernelClient.KernelSpec>> fallback) {
+        String cacheKey = envPath == null ? "" : envPath;
+        Map<String, JupyterKernelClient.KernelSpec> cached = CACHE.get(cacheKey);
+        if (cached != null) {
+            return new HashMap<>(cached);
+        }
+
+        Map<String, JupyterKernelClient.KernelSpec> kernels = new LinkedHashMap<>();
+        for (Path kernelsDir : kernelDirectories(envPath)) {
+            scanKernelsDirectory(kernelsDir, kernels);
+        }
+
+        
+        if (!kernels.containsKey("python3") && fallback != null) {
+            for (Map.Entry<String, JupyterKernelClient.KernelSpec> entry : fallback.apply(envPath).entrySet()) {
+                kernels.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+
+        CACHE.put(cacheKey, kernels);
+        return new HashMap<>(kernels);
+    }
+
+    public static void invalidate() {
+        CACHE.clear();
+    }
+
+
+    private static List<Path> kernelDirectories(String envPath) {
+        List<Path> dirs = new ArrayList<>();
+        String jupyterPath = System.getenv("JUPYTER_PATH");
+        if (jupyterPath != null && !jupyterPath.trim().isEmpty()) {
+            for (String entry : jupyterPath.split(File.pathSeparator)) {
+                if (!entry.trim().isEmpty()) {
+                    dirs.add(new File(entry.trim(), "kernels").toPath());
+                }
+            }
+        }
+
+        String dataDir = System.getenv("JUPYTER_DATA_DIR");
+        if (dataDir != null && !dataDir.trim().isEmpty()) {
+            dirs.add(new File(dataDir.trim(), "kernels").toPath());
+        }
+        String home = System.getProperty("user.home");
+        dirs.add(new File(home, ".local/share/jupyter/kernels").toPath());
+        dirs.add(new File(home, "Library/Jupyter/kernels").toPath());
+
+        if (envPath != null && !envPath.trim().isEmpty()) {
+            dirs.add(new File(envPath, "share/jupyter/kernels").toPath());
+        }
+
+        dirs.add(new File("/usr/local/share/jupyter/kernels").toPath());
+        dirs.add(new File("/usr/share/jupyter/kernels").toPath());
+        return dirs;
+    }
+
+    private static void scanKernelsDirectory(Path kernelsDir, Map<String, JupyterKernelClient.KernelSpec> kernels) {
+        if (!Files.isDirectory(kernelsDir)) {
+            watchForCreation(kernelsDir);
+            return;
+        }
+        watch(kernelsDir);
+
+        File[] kernelDirs = kernelsDir.toFile().listFiles(File::isDirectory);
+        if (kernelDirs == null) {
+            return;
+        }
+        for (File kernelDir : kernelDirs) {
+            String kernelName = kernelDir.getName().toLowerCase();
+            if (kernels.containsKey(kernelName)) {
+                continue;
+            }
+            watch(kernelDir.toPath());
+
+            File kernelJson = new File(kernelDir, "kernel.json");
+            if (!kernelJson.isFile()) {
+                continue;
+            }
+            try {
+                JSONObject spec = new JSONObject(new String(Files.readAllBytes(kernelJson.toPath()), StandardCharsets.UTF_8));
+                JupyterKernelClient.KernelSpec kernelSpec = new JupyterKernelClient.KernelSpec(
+                    kernelName, spec.optString("display_name", kernelName), kernelDir.getAbsolutePath());
+                kernelSpec.setInterruptMode(spec.optString("interrupt_mode", "signal"));
+                kernels.put(kernelName, kernelSpec);
+            } catch (Exception e) {
+                System.err.println("Could not read kernelspec " + kernelJson + ": " + e.getMessage());
+            }
+        }
+    }
+
+
+    private static synchronized void watch(Path dir) {
+        if (WATCHED_DIRS.contains(dir)) {
+            return;
+        }
+        try {
+            register(dir);
+            WATCHED_DIRS.add(dir);
+        } catch (IOException e) {
+            System.err.println("Could not watch kernelspec directory " + dir + ": " + e.getMessage());
+        }
+    }
+
+    private static synchronized void watchForCreation(Path missingDir) {
+        Path child = missingDir.toAbsolutePath().normalize();
+        Path parent = child.getParent();
+        while (parent != null && !Files.isDirectory(parent)) {
+            child = parent;
+            parent = parent.getParent();
+        }
+        if (parent == null) {
+            return;
+        }
+        Set<Path> awaited = AWAITED_CHILDREN.get(parent);
+        if (awaited != null && awaited.contains(child.getFileName())) {
+            return;
+        }
+        try {
+            if (awaited == null && !WATCHED_DIRS.contains(parent)) {
+                register(parent);
+            }
+            AWAITED_CHILDREN.computeIfAbsent(parent, k -> ConcurrentHashMap.newKeySet()).add(child.getFileName());
+        } catch (IOException e) {
+            System.err.println("Could not watch kernelspec directory " + parent + ": " + e.getMessage());
+        }
+    }
+
+    private static void register(Path dir) throws IOException {
+        if (watchService == null) {
+            watchService = FileSystems.getDefault().newWatchService();
+            Thread watcher = new Thread(KernelSpecDiscovery::processWatchEvents, "KernelSpec-Watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+        dir.register(watchService,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_DELETE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    private static void processWatchEvents() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = (Path) key.watchable();
+            List<WatchEvent<?>> events = key.pollEvents();
+            Set<Path> awaited = AWAITED_CHILDREN.get(dir);
+            if (awaited == null || WATCHED_DIRS.contains(dir)) {
+                invalidate();
+            } else {
+                for (WatchEvent<?> event : events) {
+                    if (awaited.contains(event.context())) {
+                        invalidate();
+                        break;
+                    }
+                }
+            }
+            if (!key.reset()) {
+                WATCHED_DIRS.remove(dir);
+                AWAITED_CHILDREN.remove(dir);
+            }
+        }
+    }
+}
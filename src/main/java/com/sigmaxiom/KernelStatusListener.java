@@ -0,0 +1,5 @@
+package com.sigmaxiom;
+
+interface KernelStatusListener {
+    void onStatusChange(String status);
+}
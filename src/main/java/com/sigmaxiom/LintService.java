@@ -0,0 +1,307 @@
+package com.sigmaxiom;
+
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LintService {
+
+    private static final long REQUEST_TIMEOUT_SECONDS = 20;
+    private static final ScheduledExecutorService TIMEOUTS = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Lint-Timeout-Thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final String WORKER_SCRIPT =
+        "import sys, os, io, json, contextlib, traceback, ast, tokenize\n" +
+        "for preload in ('pyflakes.api', 'pycodestyle', 'parso'):\n" +
+        "    try:\n" +
+        "        __import__(preload)\n" +
+        "    except ImportError:\n" +
+        "        pass\n" +
+        "protocol = os.fdopen(os.dup(1), 'w', encoding='utf-8')\n" +
+        "os.dup2(2, 1)\n" +
+        "for line in sys.stdin:\n" +
+        "    try:\n" +
+        "        request = json.loads(line)\n" +
+        "    except ValueError:\n" +
+        "        continue\n" +
+        "    buffer = io.StringIO()\n" +
+        "    error = None\n" +
+        "    try:\n" +
+        "        with contextlib.redirect_stdout(buffer):\n" +
+        "            exec(request.get('script', ''), {'__name__': '__lint__'})\n" +
+        "    except BaseException:\n" +
+        "        error = traceback.format_exc()\n" +
+        "    protocol.write(json.dumps({'id': request.get('id'), 'output': buffer.getvalue(), 'error': error}) + '\\n')\n" +
+        "    protocol.flush()\n";
+
+    private static class Request {
+        final long id;
+        final String script;
+        final CompletableFuture<String> future;
+
+        Request(long id, String script, CompletableFuture<String> future) {
+            this.id = id;
+            this.script = script;
+            this.future = future;
+        }
+    }
+
+    private class Worker {
+        private final Process process;
+        private final BufferedWriter stdin;
+        private final Map<Long, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+        private final Deque<Request> queue = new ArrayDeque<>();
+        private long sentId = -1;
+        private volatile boolean alive = true;
+
+        Worker(int index) throws IOException {
+            ProcessBuilder pb = new ProcessBuilder(pythonExecutable, "-u", "-c", WORKER_SCRIPT);
+            if (envPath != null && !envPath.trim().isEmpty()) {
+                String path = System.getenv("PATH");
+                pb.environment().put("PATH", new File(envPath, "bin").getAbsolutePath()
+                    + (path != null ? File.pathSeparator + path : ""));
+            }
+            pb.redirectError(new File(File.separatorChar == '\\' ? "NUL" : "/dev/null"));
+            process = pb.start();
+            stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+
+            Thread reader = new Thread(this::readResponses, "Lint-Worker-" + index);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        void send(long id, String script, CompletableFuture<String> future) {
+            boolean accepted;
+            synchronized (this) {
+                accepted = alive;
+                if (accepted) {
+                    pending.put(id, future);
+                    queue.add(new Request(id, script, future));
+                }
+            }
+            if (!accepted) {
+                submit(id, script, future);
+                return;
+            }
+
+            
+            future.whenComplete((result, ex) -> {
+                if (future.isCancelled()) {
+                    pending.remove(id);
+                    abandon(id);
+                }
+            });
+            dispatch();
+        }
+
+        synchronized int load() {
+            return queue.size() + (sentId >= 0 ? 1 : 0);
+        }
+
+        private void abandon(long id) {
+            List<Request> orphans;
+            synchronized (this) {
+                if (id != sentId || !alive) {
+                    return;
+                }
+                alive = false;
+                process.destroyForcibly();
+                orphans = new ArrayList<>(queue);
+                queue.clear();
+                for (Request orphan : orphans) {
+                    pending.remove(orphan.id);
+                }
+            }
+            for (Request orphan : orphans) {
+                if (!orphan.future.isDone()) {
+                    submit(orphan.id, orphan.script, orphan.future);
+                }
+            }
+        }
+
+        private synchronized void dispatch() {
+            while (sentId < 0 && !queue.isEmpty()) {
+                Request next = queue.poll();
+                if (next.future.isDone()) {
+                    continue;
+                }
+                JSONObject request = new JSONObject();
+                request.put("id", next.id);
+                request.put("script", next.script);
+                try {
+                    stdin.write(request.toString());
+                    stdin.write('\n');
+                    stdin.flush();
+                    sentId = next.id;
+                    TIMEOUTS.schedule(() -> {
+                        if (next.future.completeExceptionally(new TimeoutException(
+                                "Lint check timed out after " + REQUEST_TIMEOUT_SECONDS + "s"))) {
+                            pending.remove(next.id);
+                            abandon(next.id);
+                        }
+                    }, REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                } catch (IOException e) {
+                    pending.remove(next.id);
+                    alive = false;
+                    next.future.completeExceptionally(e);
+                }
+            }
+        }
+
+        private synchronized void finished(long id) {
+            if (id == sentId) {
+                sentId = -1;
+            }
+        }
+
+        private void readResponses() {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        JSONObject response = new JSONObject(line);
+                        long id = response.optLong("id", -1);
+                        finished(id);
+                        dispatch();
+                        CompletableFuture<String> future = pending.remove(id);
+                        if (future == null) {
+                            continue;
+                        }
+                        if (!response.isNull("error")) {
+                            System.err.println("Lint worker script failed: " + response.optString("error"));
+                        }
+                        future.complete(response.optString("output", ""));
+                    } catch (Exception e) {
+                        System.err.println("Malformed lint worker response: " + e.getMessage());
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Lint worker stopped: " + e.getMessage());
+            }
+            alive = false;
+            for (CompletableFuture<String> future : pending.values()) {
+                future.completeExceptionally(new IOException("Lint worker exited"));
+            }
+            pending.clear();
+        }
+
+        void close() {
+            alive = false;
+            try {
+                stdin.close();
+            } catch (IOException ignored) {
+            }
+            process.destroy();
+        }
+    }
+
+    private final String envPath;
+    private final String pythonExecutable;
+    private final Worker[] workers;
+    private final AtomicLong nextId = new AtomicLong();
+    private volatile boolean shutdown = false;
+
+    public LintService(String envPath, int workerCount) {
+        this.envPath = envPath;
+        this.pythonExecutable = findPythonExecutable(envPath);
+        this.workers = new Worker[Math.max(1, workerCount)];
+    }
+
+    public String getEnvPath() {
+        return envPath;
+    }
+
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+
+    public CompletableFuture<String> submit(String script) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        if (shutdown) {
+            future.completeExceptionally(new IllegalStateException("Lint service is shut down"));
+            return future;
+        }
+        submit(nextId.incrementAndGet(), script, future);
+        return future;
+    }
+
+    private void submit(long id, String script, CompletableFuture<String> future) {
+        if (shutdown) {
+            future.completeExceptionally(new IllegalStateException("Lint service is shut down"));
+            return;
+        }
+        try {
+            pickWorker().send(id, script, future);
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private synchronized Worker pickWorker() throws IOException {
+        Worker best = null;
+        for (int i = 0; i < workers.length; i++) {
+            if (workers[i] == null || !workers[i].alive) {
+                if (workers[i] != null) {
+                    workers[i].close();
+                }
+                workers[i] = new Worker(i);
+            }
+            if (best == null || workers[i].load() < best.load()) {
+                best = workers[i];
+            }
+        }
+        return best;
+    }
+
+    public synchronized void shutdown() {
+        shutdown = true;
+        List<Worker> running = new ArrayList<>();
+        for (int i = 0; i < workers.length; i++) {
+            if (workers[i] != null) {
+                running.add(workers[i]);
+                workers[i] = null;
+            }
+        }
+        for (Worker worker : running) {
+            worker.close();
+        }
+    }
+
+
+    public static String findPythonExecutable(String envPath) {
+        if (envPath != null && !envPath.trim().isEmpty()) {
+            File python = new File(envPath, "bin/python");
+            if (python.exists()) {
+                return python.getAbsolutePath();
+            }
+            python = new File(envPath, "python.exe");
+            if (python.exists()) {
+                return python.getAbsolutePath();
+            }
+        }
+        return "python3";
+    }
+}
@@ -0,0 +1,257 @@
+package com.sigmaxiom;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+public class NotebookCodec {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String INDENT = " ";
+    private static final String CELL_INDENT = "\n" + INDENT + INDENT;
+
+    public interface CellHandler {
+        void onCell(JSONObject cell) throws IOException;
+    }
+
+    private NotebookCodec() {
+    }
+
+
+    public static JSONObject read(Path path, CellHandler handler) throws IOException {
+        JSONObject notebook = new JSONObject();
+        boolean sawCells = false;
+        try (BufferedReader in = new BufferedReader(Files.newBufferedReader(path, StandardCharsets.UTF_8), BUFFER_SIZE);
+             JsonReader reader = new JsonReader(in)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String field = reader.nextName();
+                if ("cells".equals(field) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    sawCells = true;
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        Object cell = readValue(reader);
+                        if (cell instanceof JSONObject) {
+                            handler.onCell((JSONObject) cell);
+                        }
+                    }
+                    reader.endArray();
+                } else {
+                    notebook.put(field, readValue(reader));
+                }
+            }
+            reader.endObject();
+        }
+        if (!sawCells) {
+            throw new IOException("Not a notebook: missing \"cells\" array");
+        }
+        return notebook;
+    }
+
+    public static Object readValue(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                JSONObject object = new JSONObject();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    object.put(name, readValue(reader));
+                }
+                reader.endObject();
+                return object;
+            case BEGIN_ARRAY:
+                JSONArray array = new JSONArray();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    array.put(readValue(reader));
+                }
+                reader.endArray();
+                return array;
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                return parseNumber(reader.nextString());
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            default:
+                throw new IOException("Unexpected JSON token " + reader.peek() + " at " + reader.getPath());
+        }
+    }
+
+    private static Object parseNumber(String text) {
+        if (text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0) {
+            try {
+                long value = Long.parseLong(text);
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    return (int) value;
+                }
+                return value;
+            } catch (NumberFormatException e) {
+                return new BigInteger(text);
+            }
+        }
+        return new BigDecimal(text);
+    }
+
+
+    public static String joinMultiline(Object value) {
+        if (value instanceof JSONArray) {
+            JSONArray parts = (JSONArray) value;
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < parts.length(); i++) {
+                text.append(parts.optString(i));
+            }
+            return text.toString();
+        }
+        return value instanceof String ? (String) value : "";
+    }
+
+    public static JSONArray splitMultiline(String text) {
+        JSONArray lines = new JSONArray();
+        int start = 0;
+        for (int i = text.indexOf('\n'); i >= 0; i = text.indexOf('\n', start)) {
+            lines.put(text.substring(start, i + 1));
+            start = i + 1;
+        }
+        if (start < text.length()) {
+            lines.put(text.substring(start));
+        }
+        return lines;
+    }
+
+
+    public static Writer write(Path path, JSONObject metadata) throws IOException {
+        return new Writer(path, null, metadata);
+    }
+
+    public static Writer writeAtomically(Path target, JSONObject metadata) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, "." + target.getFileName(), ".tmp");
+        return new Writer(temp, target, metadata);
+    }
+
+    public static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public static class Writer implements Closeable {
+        private final Path path;
+        private final Path target;
+        private final FileChannel channel;
+        private final JsonWriter writer;
+        private boolean finished = false;
+
+        private Writer(Path path, Path target, JSONObject metadata) throws IOException {
+            this.path = path;
+            this.target = target;
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8), BUFFER_SIZE);
+            writer = new JsonWriter(out);
+            writer.setIndent(INDENT);
+            writer.beginObject();
+            writer.name("metadata");
+            writeValue(writer, metadata != null ? metadata : new JSONObject());
+            writer.name("nbformat").value(4);
+            writer.name("nbformat_minor").value(5);
+            writer.name("cells");
+            writer.beginArray();
+        }
+
+        public void writeCell(JSONObject cell) throws IOException {
+            writeValue(writer, cell);
+        }
+
+        public void writeCell(CellFragment fragment) throws IOException {
+            writer.jsonValue(fragment.getJson().replace("\n", CELL_INDENT));
+        }
+
+        public void finish() throws IOException {
+            if (!finished) {
+                writer.endArray();
+                writer.endObject();
+                writer.flush();
+                channel.force(true);
+                writer.close();
+                if (target != null) {
+                    moveAtomically(path, target);
+                }
+                finished = true;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                writer.close();
+                if (target != null) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    public static String encode(Object value) throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter writer = new JsonWriter(out);
+        writer.setIndent(INDENT);
+        writeValue(writer, value);
+        writer.flush();
+        return out.toString();
+    }
+
+    public static void writeValue(JsonWriter writer, Object value) throws IOException {
+        if (value == null || JSONObject.NULL.equals(value)) {
+            writer.nullValue();
+        } else if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            writer.beginObject();
+            for (String key : object.keySet()) {
+                writer.name(key);
+                writeValue(writer, object.opt(key));
+            }
+            writer.endObject();
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            writer.beginArray();
+            for (int i = 0; i < array.length(); i++) {
+                writeValue(writer, array.opt(i));
+            }
+            writer.endArray();
+        } else if (value instanceof Map) {
+            writeValue(writer, new JSONObject((Map<?, ?>) value));
+        } else if (value instanceof Boolean) {
+            writer.value((Boolean) value);
+        } else if (value instanceof Number) {
+            writer.value((Number) value);
+        } else {
+            writer.value(value.toString());
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package com.sigmaxiom;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.prefs.Preferences;
+
+public class NotebookJournal implements Closeable {
+
+    public static final String PREF_AUTOSAVE_SECONDS = "autosave_interval_seconds";
+    public static final String PREF_COMPACT_SECONDS = "autosave_compact_seconds";
+    private static final long DEFAULT_AUTOSAVE_SECONDS = 2;
+    private static final long DEFAULT_COMPACT_SECONDS = 60;
+    private static final String EXTENSION = ".journal";
+
+    private static final ExecutorService AUTOSAVE_POOL = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Notebook-Autosave-Thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Set<File> OPEN_JOURNALS = Collections.synchronizedSet(new HashSet<>());
+
+    private final File file;
+    private FileChannel channel;
+    private FileLock lock;
+    private volatile File notebookFile;
+    private long baseLength = -1;
+    private long baseModified = -1;
+
+    private NotebookJournal(File file, FileChannel channel, FileLock lock) {
+        this.file = file;
+        this.channel = channel;
+        this.lock = lock;
+        OPEN_JOURNALS.add(file);
+    }
+
+    public static File getDirectory() {
+        return new File(System.getProperty("user.home"), ".sigmaxiom" + File.separator + "autosave");
+    }
+
+    public static long getAutosaveIntervalMillis() {
+        Preferences prefs = Preferences.userNodeForPackage(JupyterNotebookIDE.class);
+        return Math.max(1, prefs.getLong(PREF_AUTOSAVE_SECONDS, DEFAULT_AUTOSAVE_SECONDS)) * 1000L;
+    }
+
+    public static long getCompactIntervalMillis() {
+        Preferences prefs = Preferences.userNodeForPackage(JupyterNotebookIDE.class);
+        return Math.max(1, prefs.getLong(PREF_COMPACT_SECONDS, DEFAULT_COMPACT_SECONDS)) * 1000L;
+    }
+
+    public static <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        AUTOSAVE_POOL.execute(() -> {
+            try {
+                future.complete(task.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+
+    public static NotebookJournal create(File notebookFile) throws IOException {
+        File directory = getDirectory();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create autosave directory " + directory);
+        }
+        File file = File.createTempFile("notebook-", EXTENSION, directory);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock lock = tryLock(channel);
+        if (lock == null) {
+            channel.close();
+            throw new IOException("Cannot lock autosave journal " + file);
+        }
+        NotebookJournal journal = new NotebookJournal(file, channel, lock);
+        journal.notebookFile = notebookFile;
+        journal.reset();
+        return journal;
+    }
+
+    public static NotebookJournal adopt(File file) throws IOException {
+        if (OPEN_JOURNALS.contains(file)) {
+            throw new IOException("Autosave journal " + file.getName() + " is already open");
+        }
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock lock = tryLock(channel);
+        if (lock == null) {
+            channel.close();
+            throw new IOException("Autosave journal " + file.getName() + " is in use");
+        }
+        NotebookJournal journal = new NotebookJournal(file, channel, lock);
+        for (JSONObject entry : journal.readEntries()) {
+            if ("header".equals(entry.optString("op"))) {
+                journal.notebookFile = entry.isNull("notebook") ? null : new File(entry.getString("notebook"));
+                journal.baseLength = entry.optLong("length", -1);
+                journal.baseModified = entry.optLong("modified", -1);
+            }
+        }
+        return journal;
+    }
+
+    public static List<File> findOrphans() {
+        List<File> orphans = new ArrayList<>();
+        File[] files = getDirectory().listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files == null) {
+            return orphans;
+        }
+        for (File file : files) {
+            if (OPEN_JOURNALS.contains(file)) {
+                continue;
+            }
+            boolean recoverable = false;
+            try {
+                NotebookJournal journal = adopt(file);
+                try {
+                    for (JSONObject entry : journal.readEntries()) {
+                        if (!"header".equals(entry.optString("op"))) {
+                            recoverable = !journal.isStale();
+                            break;
+                        }
+                    }
+                    if (!recoverable) {
+                        journal.delete();
+                    }
+                } finally {
+                    journal.close();
+                }
+            } catch (IOException e) {
+                System.err.println("Skipping autosave journal " + file.getName() + ": " + e.getMessage());
+            }
+            if (recoverable) {
+                orphans.add(file);
+            }
+        }
+        orphans.sort(Comparator.comparingLong(File::lastModified));
+        return orphans;
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+
+    public File getNotebookFile() {
+        return notebookFile;
+    }
+
+    public boolean isStale() {
+        if (notebookFile == null || baseLength < 0) {
+            return false;
+        }
+        return notebookFile.length() != baseLength || notebookFile.lastModified() != baseModified;
+    }
+
+    public OutputSidecar getSidecar() {
+        if (notebookFile != null) {
+            return new OutputSidecar(notebookFile);
+        }
+        String name = file.getName();
+        return new OutputSidecar(new File(file.getParentFile(), name.substring(0, name.length() - EXTENSION.length()) + ".ipynb"));
+    }
+
+    public synchronized void moveTo(File notebookFile) {
+        if (this.notebookFile == null && notebookFile != null) {
+            deleteDirectory(getSidecar().getDirectory());
+        }
+        this.notebookFile = notebookFile;
+    }
+
+    public synchronized long size() throws IOException {
+        return channel.size();
+    }
+
+    public synchronized void append(List<String> entries) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (String entry : entries) {
+            lines.append(entry).append('\n');
+        }
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(lines.toString());
+        long position = channel.size();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        channel.force(false);
+    }
+
+    public synchronized void reset() throws IOException {
+        channel.truncate(0);
+        append(Collections.singletonList(header().toString()));
+    }
+
+    public synchronized void rewrite(List<String> entries) throws IOException {
+        File temp = File.createTempFile("rewrite-", ".tmp", file.getParentFile());
+        try {
+            try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+                StringBuilder lines = new StringBuilder(header().toString()).append('\n');
+                for (String entry : entries) {
+                    lines.append(entry).append('\n');
+                }
+                ByteBuffer buffer = StandardCharsets.UTF_8.encode(lines.toString());
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                out.force(true);
+            }
+            lock.release();
+            channel.close();
+            NotebookCodec.moveAtomically(temp.toPath(), file.toPath());
+        } finally {
+            if (!channel.isOpen()) {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                lock = tryLock(channel);
+                if (lock == null) {
+                    throw new IOException("Lost lock on autosave journal " + file);
+                }
+            }
+            if (temp.exists() && !temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+    }
+
+    private JSONObject header() {
+        JSONObject header = new JSONObject()
+            .put("op", "header")
+            .put("version", 1)
+            .put("notebook", notebookFile != null ? notebookFile.getAbsolutePath() : JSONObject.NULL)
+            .put("created", System.currentTimeMillis());
+        if (notebookFile != null && notebookFile.isFile()) {
+            baseLength = notebookFile.length();
+            baseModified = notebookFile.lastModified();
+            header.put("length", baseLength).put("modified", baseModified);
+        } else {
+            baseLength = -1;
+            baseModified = -1;
+        }
+        return header;
+    }
+
+
+    public static String cellEntry(CellFragment fragment) {
+        return "{\"op\":\"cell\",\"id\":" + JSONObject.quote(fragment.getCellId()) + ",\"cell\":" + fragment.toSingleLine() + "}";
+    }
+
+    public static String orderEntry(List<String> ids) {
+        return new JSONObject().put("op", "order").put("ids", new JSONArray(ids)).toString();
+    }
+
+    public synchronized List<JSONObject> replay(List<JSONObject> baseCells) throws IOException {
+        Map<String, JSONObject> cells = new HashMap<>();
+        List<String> order = new ArrayList<>();
+        for (JSONObject cell : baseCells) {
+            String id = cell.optString("id", "");
+            cells.put(id, cell);
+            order.add(id);
+        }
+        for (JSONObject entry : readEntries()) {
+            String op = entry.optString("op");
+            if ("cell".equals(op)) {
+                cells.put(entry.getString("id"), entry.getJSONObject("cell"));
+            } else if ("order".equals(op)) {
+                JSONArray ids = entry.getJSONArray("ids");
+                order = new ArrayList<>(ids.length());
+                for (int i = 0; i < ids.length(); i++) {
+                    order.add(ids.getString(i));
+                }
+            }
+        }
+        List<JSONObject> result = new ArrayList<>(order.size());
+        for (String id : order) {
+            JSONObject cell = cells.get(id);
+            if (cell != null) {
+                result.add(cell);
+            }
+        }
+        return result;
+    }
+
+    private List<JSONObject> readEntries() throws IOException {
+        List<JSONObject> entries = new ArrayList<>();
+        channel.position(0);
+        BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            try {
+                entries.add(new JSONObject(line));
+            } catch (JSONException e) {
+                System.err.println("Autosave journal " + file.getName() + " ends with an incomplete entry; ignoring it");
+                break;
+            }
+        }
+        return entries;
+    }
+
+
+    public synchronized void delete() {
+        close();
+        if (notebookFile == null) {
+            deleteDirectory(getSidecar().getDirectory());
+        }
+        if (file.exists() && !file.delete()) {
+            System.err.println("Could not delete autosave journal " + file);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        OPEN_JOURNALS.remove(file);
+        try {
+            if (lock != null && lock.isValid()) {
+                lock.release();
+            }
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing autosave journal " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File child : files) {
+            if (!child.delete()) {
+                child.deleteOnExit();
+            }
+        }
+        if (!directory.delete()) {
+            directory.deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.sigmaxiom;
+
+import javax.swing.text.html.HTMLDocument;
+import javax.swing.text.html.HTMLEditorKit;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class OutputFormatter {
+
+    public enum Kind { TEXT, TABLE, TRACEBACK }
+
+    public static final int LARGE_OUTPUT_BYTES = 256 * 1024;
+
+    private static final Pattern BASE64_IMAGE = Pattern.compile("data:image/\\w+;base64,[A-Za-z0-9+/=]+");
+    private static final Pattern TAG = Pattern.compile("<[^>]*>");
+    private static final Pattern ENTITY = Pattern.compile("&(nbsp|lt|gt|amp|quot);");
+    private static final Pattern BODY_END = Pattern.compile("(?i)</body>");
+    private static final Pattern ERROR_LINE = Pattern.compile("(?m)^\\s*[\\w.]*(Error|Exception)\\b[^\\n]*:");
+    private static final int TRACEBACK_TAIL_CHARS = 4096;
+
+    private static final String TABLE_STYLE =
+        "<html><head><style>\n" +
+        "body { background-color: #101035; color: white; font-family: monospace; }\n" +
+        "table { border-collapse: collapse; margin: 10px 0; }\n" +
+        "th { background: #2a2a55; color: white; padding: 6px 10px; text-align: left; border: 1px solid #3a3a75; }\n" +
+        "td { padding: 6px 10px; border: 1px solid #3a3a75; }\n" +
+        "tr:nth-child(even) { background-color: #1a1a45; }\n" +
+        "</style></head><body>\n";
+
+    private static final ExecutorService FORMAT_POOL = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "Output-Format-Thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public static class FormattedOutput {
+        private final Kind kind;
+        private final String plainText;
+        private final HTMLDocument htmlDocument;
+        private final List<String> base64Images;
+
+        FormattedOutput(Kind kind, String plainText, HTMLDocument htmlDocument, List<String> base64Images) {
+            this.kind = kind;
+            this.plainText = plainText;
+            this.htmlDocument = htmlDocument;
+            this.base64Images = base64Images;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public String getPlainText() {
+            return plainText;
+        }
+
+        public boolean isHtml() {
+            return htmlDocument != null;
+        }
+
+        public HTMLDocument getHtmlDocument() {
+            return htmlDocument;
+        }
+
+        public List<String> getBase64Images() {
+            return base64Images;
+        }
+    }
+
+    private OutputFormatter() {
+    }
+
+
+    public static CompletableFuture<FormattedOutput> formatAsync(String result) {
+        return CompletableFuture.supplyAsync(() -> format(result), FORMAT_POOL);
+    }
+
+    public static FormattedOutput format(String result) {
+        if (result == null) {
+            result = "";
+        }
+
+        if (result.length() > LARGE_OUTPUT_BYTES) {
+            return formatText(result);
+        }
+
+        if (result.contains("<table") && result.contains("</table>")) {
+            String html = TABLE_STYLE + result + "</body></html>";
+            return new FormattedOutput(Kind.TABLE, toPlainText(result), parseHtml(padHtml(html)), Collections.<String>emptyList());
+        }
+
+        if (isTraceback(result)) {
+            StringBuilder html = new StringBuilder(result.length() + result.length() / 4);
+            html.append("<html><body style='color:#E6E6E6; font-family:monospace'>");
+            for (String line : result.split("\n")) {
+                String escapedLine = escape(line);
+                if (line.contains("Error:") || line.contains("Exception:")) {
+                    html.append("<div style='color:#FF6B68;'>").append(escapedLine).append("</div>");
+                } else if (line.trim().startsWith("File \"") || line.contains("line ")) {
+                    html.append("<div style='color:#82AAFF;'>").append(escapedLine).append("</div>");
+                } else {
+                    html.append("<div>").append(escapedLine).append("</div>");
+                }
+            }
+            html.append("</body></html>");
+            return new FormattedOutput(Kind.TRACEBACK, result, parseHtml(padHtml(html.toString())), Collections.<String>emptyList());
+        }
+        return formatText(result);
+    }
+
+    private static boolean isTraceback(String result) {
+        String tail = result.substring(Math.max(0, result.length() - TRACEBACK_TAIL_CHARS));
+        return tail.contains("Traceback (most recent call last)") || ERROR_LINE.matcher(tail).find();
+    }
+
+    private static FormattedOutput formatText(String result) {
+        List<String> base64Images = new ArrayList<>();
+        Matcher matcher = BASE64_IMAGE.matcher(result);
+        StringBuffer text = new StringBuffer();
+        while (matcher.find()) {
+            base64Images.add(matcher.group());
+            matcher.appendReplacement(text, Matcher.quoteReplacement(
+                "[Figure " + base64Images.size() + " displayed in the visualization panel]"));
+        }
+        matcher.appendTail(text);
+        return new FormattedOutput(Kind.TEXT, text.toString(), null, base64Images);
+    }
+
+
+    public static String toPlainText(String html) {
+        Matcher matcher = ENTITY.matcher(TAG.matcher(html).replaceAll(""));
+        StringBuffer text = new StringBuffer();
+        while (matcher.find()) {
+            String entity = matcher.group(1);
+            String replacement;
+            if ("nbsp".equals(entity)) {
+                replacement = " ";
+            } else if ("lt".equals(entity)) {
+                replacement = "<";
+            } else if ("gt".equals(entity)) {
+                replacement = ">";
+            } else if ("amp".equals(entity)) {
+                replacement = "&";
+            } else {
+                replacement = "\"";
+            }
+            matcher.appendReplacement(text, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(text);
+        return text.toString();
+    }
+
+    private static String escape(String line) {
+        StringBuilder escaped = new StringBuilder(line.length() + 16);
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '&') {
+                escaped.append("&amp;");
+            } else if (c == '<') {
+                escaped.append("&lt;");
+            } else if (c == '>') {
+                escaped.append("&gt;");
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String padHtml(String html) {
+        Matcher matcher = BODY_END.matcher(html);
+        if (matcher.find()) {
+            return matcher.replaceAll("<br><br></body>");
+        }
+        return html + "<br><br>";
+    }
+
+    private static HTMLDocument parseHtml(String html) {
+        HTMLEditorKit kit = new HTMLEditorKit();
+        HTMLDocument document = (HTMLDocument) kit.createDefaultDocument();
+        document.putProperty("IgnoreCharsetDirective", Boolean.TRUE);
+        try {
+            kit.read(new StringReader(html), document, 0);
+        } catch (Exception e) {
+            System.err.println("Error parsing output HTML: " + e.getMessage());
+        }
+        return document;
+    }
+}
@@ -0,0 +1,154 @@
+package com.sigmaxiom;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+public class OutputSidecar {
+
+    public static final String SIDECAR_MIME_TYPE = "application/vnd.sigmaxiom.sidecar+json";
+    public static final int INLINE_LIMIT_BYTES = 256 * 1024;
+    private static final Pattern STORED_NAME = Pattern.compile("[0-9a-f]{64}\\.[a-z]+");
+
+    public interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private final File directory;
+    private final Set<String> referenced = new HashSet<>();
+
+    public OutputSidecar(File notebookFile) {
+        String name = notebookFile.getName();
+        if (name.toLowerCase().endsWith(".ipynb")) {
+            name = name.substring(0, name.length() - 6);
+        }
+        this.directory = new File(notebookFile.getAbsoluteFile().getParentFile(), name + ".outputs");
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public File resolve(String storedName) {
+        if (storedName == null || !STORED_NAME.matcher(storedName).matches()) {
+            return null;
+        }
+        File file = new File(directory, storedName);
+        return file.isFile() ? file : null;
+    }
+
+
+    public String store(byte[] data, String extension) throws IOException {
+        return store(out -> out.write(data), extension);
+    }
+
+    public String store(Content content, String extension) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create output directory " + directory);
+        }
+        MessageDigest digest = newDigest();
+        File temp = File.createTempFile("output-", ".tmp", directory);
+        try {
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp.toPath()), digest)) {
+                content.writeTo(out);
+            }
+            String storedName = toHex(digest.digest()) + "." + extension;
+            File target = new File(directory, storedName);
+            if (!target.isFile()) {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            referenced.add(storedName);
+            return storedName;
+        } finally {
+            if (temp.exists() && !temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+    }
+
+
+    public static Set<String> storedNames(JSONObject cellJson) {
+        Set<String> names = new HashSet<>();
+        JSONArray outputs = cellJson.optJSONArray("outputs");
+        for (int i = 0; outputs != null && i < outputs.length(); i++) {
+            JSONObject data = outputs.optJSONObject(i) != null ? outputs.optJSONObject(i).optJSONObject("data") : null;
+            JSONObject reference = data != null ? data.optJSONObject(SIDECAR_MIME_TYPE) : null;
+            String storedName = reference != null ? reference.optString("file", null) : null;
+            if (storedName != null) {
+                names.add(storedName);
+            }
+        }
+        return names;
+    }
+
+    public void retain(JSONObject cellJson, OutputSidecar source) {
+        retain(storedNames(cellJson), source);
+    }
+
+    public void retain(Collection<String> storedNames, OutputSidecar source) {
+        for (String storedName : storedNames) {
+            if (resolve(storedName) == null && source != null && source != this) {
+                File original = source.resolve(storedName);
+                if (original != null) {
+                    try {
+                        if (!directory.isDirectory() && !directory.mkdirs()) {
+                            throw new IOException("Cannot create output directory " + directory);
+                        }
+                        Files.copy(original.toPath(), new File(directory, storedName).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    } catch (IOException e) {
+                        System.err.println("Error copying stored output " + storedName + ": " + e.getMessage());
+                        continue;
+                    }
+                }
+            }
+            referenced.add(storedName);
+        }
+    }
+
+    public void removeUnreferenced() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        int remaining = files.length;
+        for (File file : files) {
+            if (STORED_NAME.matcher(file.getName()).matches() && !referenced.contains(file.getName())) {
+                if (file.delete()) {
+                    remaining--;
+                }
+            }
+        }
+        if (remaining == 0 && !directory.delete()) {
+            System.err.println("Could not remove empty output directory " + directory);
+        }
+    }
+
+
+    private static MessageDigest newDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,294 @@
+package com.sigmaxiom;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.prefs.Preferences;
+
+public class OutputStore {
+
+    public static final String PREF_OUTPUT_SPILL_MB = "output_spill_threshold_mb";
+    private static final long DEFAULT_SPILL_MB = 8;
+    private static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+    private static final int WRITE_CHUNK_BYTES = 1024 * 1024;
+
+    private final long spillThreshold;
+    private byte[] memory = new byte[4096];
+    private long length = 0;
+    private long[] lineStarts = new long[1024];
+    private int startCount = 1;
+    private int maxLineBytes = 0;
+
+    private File spillFile;
+    private RandomAccessFile spillAccess;
+    private FileChannel spillChannel;
+    private MappedByteBuffer segment;
+    private long segmentStart = -1;
+    private long segmentLength = 0;
+
+    public OutputStore(long spillThreshold) {
+        this.spillThreshold = Math.max(0, Math.min(spillThreshold, Integer.MAX_VALUE / 2));
+    }
+
+    public static long getSpillThresholdBytes() {
+        Preferences prefs = Preferences.userNodeForPackage(JupyterNotebookIDE.class);
+        return Math.max(0, prefs.getLong(PREF_OUTPUT_SPILL_MB, DEFAULT_SPILL_MB)) * 1024L * 1024L;
+    }
+
+
+    public synchronized void append(String text) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        byte[] bytes = text.replace("\r\n", "\n").replace("\t", "    ").getBytes(StandardCharsets.UTF_8);
+        try {
+            if (spillChannel == null && length + bytes.length > spillThreshold) {
+                spill();
+            }
+            if (spillChannel != null) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                long position = length;
+                while (buffer.hasRemaining()) {
+                    position += spillChannel.write(buffer, position);
+                }
+            } else {
+                ensureMemory((int) length + bytes.length);
+                System.arraycopy(bytes, 0, memory, (int) length, bytes.length);
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing output spill file: " + e.getMessage());
+            return;
+        }
+
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                long next = length + i + 1;
+                maxLineBytes = (int) Math.max(maxLineBytes, Math.min(MAX_LINE_BYTES, next - 1 - lineStarts[startCount - 1]));
+                if (startCount == lineStarts.length) {
+                    lineStarts = Arrays.copyOf(lineStarts, lineStarts.length * 2);
+                }
+                lineStarts[startCount++] = next;
+            }
+        }
+        length += bytes.length;
+        maxLineBytes = (int) Math.max(maxLineBytes, Math.min(MAX_LINE_BYTES, length - lineStarts[startCount - 1]));
+    }
+
+    public synchronized void setText(String text) {
+        clear();
+        append(text);
+    }
+
+    public synchronized void clear() {
+        closeSpill();
+        memory = new byte[4096];
+        length = 0;
+        lineStarts = new long[1024];
+        startCount = 1;
+        maxLineBytes = 0;
+    }
+
+    public synchronized void close() {
+        clear();
+    }
+
+    public synchronized boolean isEmpty() {
+        return length == 0;
+    }
+
+    public synchronized long getByteLength() {
+        return length;
+    }
+
+    public synchronized boolean isSpilled() {
+        return spillChannel != null;
+    }
+
+    public synchronized int getLineCount() {
+        if (length == 0) {
+            return 0;
+        }
+        return lineStarts[startCount - 1] == length ? startCount - 1 : startCount;
+    }
+
+    public synchronized int getMaxLineLength() {
+        return maxLineBytes;
+    }
+
+
+    public synchronized String getLine(int line) {
+        if (line >= getLineCount()) {
+            return "";
+        }
+        long start = lineStarts[line];
+        long end = lineEnd(line);
+        int count = (int) Math.min(MAX_LINE_BYTES, end - start);
+        String text = decode(start, count);
+        return end - start > count ? text + " \u2026" : text;
+    }
+
+    public synchronized String getText() {
+        return decode(0, (int) Math.min(Integer.MAX_VALUE - 8, length));
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        long end = getByteLength();
+        long position = 0;
+        while (position < end) {
+            byte[] chunk = readChunk(position, (int) Math.min(WRITE_CHUNK_BYTES, end - position));
+            if (chunk.length == 0) {
+                break;
+            }
+            out.write(chunk);
+            position += chunk.length;
+        }
+    }
+
+    private synchronized byte[] readChunk(long position, int count) throws IOException {
+        count = (int) Math.max(0, Math.min(count, length - position));
+        if (spillChannel == null) {
+            return Arrays.copyOfRange(memory, (int) position, (int) position + count);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(count);
+        while (buffer.hasRemaining()) {
+            if (spillChannel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.position() == count ? buffer.array() : Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    public synchronized String getText(int fromLine, int fromColumn, int toLine, int toColumn) {
+        StringBuilder text = new StringBuilder();
+        for (int line = fromLine; line <= toLine && line < getLineCount(); line++) {
+            String content = getFullLine(line);
+            int begin = line == fromLine ? Math.min(fromColumn, content.length()) : 0;
+            int end = line == toLine ? Math.min(toColumn, content.length()) : content.length();
+            text.append(content, begin, Math.max(begin, end));
+            if (line < toLine) {
+                text.append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+
+    public int[] find(String query, int fromLine, int fromColumn, boolean forward) {
+        int lines = getLineCount();
+        if (query == null || query.isEmpty() || lines == 0) {
+            return null;
+        }
+        String needle = query.toLowerCase();
+        for (int step = 0; step <= lines; step++) {
+            int line = Math.floorMod(fromLine + (forward ? step : -step), lines);
+            String content = getFullLine(line);
+            if (content == null) {
+                return null;
+            }
+            content = content.toLowerCase();
+            int column;
+            if (forward) {
+                column = content.indexOf(needle, step == 0 ? fromColumn : 0);
+            } else {
+                column = step == 0 ? (fromColumn > 0 ? content.lastIndexOf(needle, fromColumn - 1) : -1)
+                                   : content.lastIndexOf(needle);
+            }
+            if (column >= 0) {
+                return new int[] {line, column};
+            }
+        }
+        return null;
+    }
+
+    private synchronized String getFullLine(int line) {
+        if (line >= getLineCount()) {
+            return null;
+        }
+        return decode(lineStarts[line], (int) (lineEnd(line) - lineStarts[line]));
+    }
+
+    private long lineEnd(int line) {
+        long end = line + 1 < startCount ? lineStarts[line + 1] - 1 : length;
+        return Math.max(lineStarts[line], end);
+    }
+
+    private String decode(long start, int count) {
+        if (count <= 0) {
+            return "";
+        }
+        if (spillChannel == null) {
+            return new String(memory, (int) start, count, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[count];
+        int copied = 0;
+        try {
+            while (copied < count) {
+                long position = start + copied;
+                mapSegment(position);
+                ByteBuffer view = segment.duplicate();
+                view.position((int) (position - segmentStart));
+                int chunk = Math.min(count - copied, view.remaining());
+                view.get(bytes, copied, chunk);
+                copied += chunk;
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading output spill file: " + e.getMessage());
+        }
+        return new String(bytes, 0, copied, StandardCharsets.UTF_8);
+    }
+
+    private void mapSegment(long position) throws IOException {
+        if (segment != null && position >= segmentStart && position < segmentStart + segmentLength) {
+            return;
+        }
+        long start = (position / SEGMENT_BYTES) * SEGMENT_BYTES;
+        long size = Math.min(SEGMENT_BYTES, length - start);
+        segment = spillChannel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        segmentStart = start;
+        segmentLength = size;
+    }
+
+    private void spill() throws IOException {
+        spillFile = File.createTempFile("sigmaxiom-output-", ".txt");
+        spillFile.deleteOnExit();
+        spillAccess = new RandomAccessFile(spillFile, "rw");
+        spillChannel = spillAccess.getChannel();
+        ByteBuffer buffer = ByteBuffer.wrap(memory, 0, (int) length);
+        while (buffer.hasRemaining()) {
+            spillChannel.write(buffer);
+        }
+        memory = null;
+    }
+
+    private void ensureMemory(int capacity) {
+        if (capacity > memory.length) {
+            memory = Arrays.copyOf(memory, Math.max(capacity, memory.length * 2));
+        }
+    }
+
+    private void closeSpill() {
+        segment = null;
+        segmentStart = -1;
+        segmentLength = 0;
+        if (spillChannel != null) {
+            try {
+                spillAccess.close();
+            } catch (IOException e) {
+                System.err.println("Error closing output spill file: " + e.getMessage());
+            }
+            if (!spillFile.delete()) {
+                spillFile.deleteOnExit();
+            }
+            spillChannel = null;
+            spillAccess = null;
+            spillFile = null;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.sigmaxiom;
+
+import javax.swing.AbstractAction;
+import javax.swing.ActionMap;
+import javax.swing.InputMap;
+import javax.swing.JComponent;
+import javax.swing.JOptionPane;
+import javax.swing.JViewport;
+import javax.swing.KeyStroke;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.awt.datatransfer.StringSelection;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.concurrent.CompletableFuture;
+
+public class OutputViewer extends JComponent implements Scrollable {
+
+    private static final int PADDING = 4;
+    private static final Color SELECTION_COLOR = new Color(40, 40, 100);
+    private static final Color MATCH_COLOR = new Color(0x4EC9B0);
+
+    private final OutputStore store;
+    private int lineCount = 0;
+    private int maxLineLength = 0;
+    private int anchorLine = -1;
+    private int anchorColumn = 0;
+    private int caretLine = -1;
+    private int caretColumn = 0;
+    private String lastQuery = "";
+    private int matchLine = -1;
+    private int matchColumn = 0;
+
+    public OutputViewer(OutputStore store) {
+        this.store = store;
+        setOpaque(true);
+        setFocusable(true);
+        setBackground(new Color(10, 10, 30));
+        setForeground(new Color(0xE6E6E6));
+        setFont(new Font(Font.MONOSPACED, Font.PLAIN, 18));
+
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                requestFocusInWindow();
+                Point position = positionAt(e.getPoint());
+                if (!e.isShiftDown() || anchorLine < 0) {
+                    anchorLine = position.y;
+                    anchorColumn = position.x;
+                }
+                caretLine = position.y;
+                caretColumn = position.x;
+                repaint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                Point position = positionAt(e.getPoint());
+                caretLine = position.y;
+                caretColumn = position.x;
+                scrollRectToVisible(new Rectangle(e.getX(), e.getY(), 1, 1));
+                repaint();
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        installKeyBindings();
+    }
+
+    public OutputStore getStore() {
+        return store;
+    }
+
+
+    public void contentChanged() {
+        lineCount = store.getLineCount();
+        maxLineLength = store.getMaxLineLength();
+        if (anchorLine >= lineCount || caretLine >= lineCount) {
+            anchorLine = -1;
+            caretLine = -1;
+        }
+        if (matchLine >= lineCount) {
+            matchLine = -1;
+        }
+        revalidate();
+        repaint();
+    }
+
+    public boolean isScrolledToEnd() {
+        Rectangle visible = getVisibleRect();
+        return visible.y + visible.height >= getPreferredSize().height - lineHeight();
+    }
+
+    public void scrollToEnd() {
+        if (getParent() instanceof JViewport) {
+            getParent().validate();
+        }
+        Dimension size = getPreferredSize();
+        scrollRectToVisible(new Rectangle(0, Math.max(0, size.height - 1), 1, 1));
+    }
+
+    public boolean hasSelection() {
+        return anchorLine >= 0 && caretLine >= 0 && (anchorLine != caretLine || anchorColumn != caretColumn);
+    }
+
+    public String getSelectedText() {
+        if (!hasSelection()) {
+            return "";
+        }
+        int[] range = selectionRange();
+        return store.getText(range[0], range[1], range[2], range[3]);
+    }
+
+    public void selectAll() {
+        if (lineCount == 0) {
+            return;
+        }
+        anchorLine = 0;
+        anchorColumn = 0;
+        caretLine = lineCount - 1;
+        caretColumn = Integer.MAX_VALUE;
+        repaint();
+    }
+
+    public void copySelection() {
+        String text = hasSelection() ? getSelectedText() : store.getText();
+        if (!text.isEmpty()) {
+            Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new StringSelection(text), null);
+        }
+    }
+
+
+    public void promptFind() {
+        String query = JOptionPane.showInputDialog(this, "Find in output:", lastQuery);
+        if (query != null && !query.isEmpty()) {
+            lastQuery = query;
+            find(query, true);
+        }
+    }
+
+    public void find(String query, boolean forward) {
+        if (query == null || query.isEmpty()) {
+            return;
+        }
+        lastQuery = query;
+        final int fromLine = matchLine >= 0 ? matchLine : Math.max(0, caretLine);
+        final int fromColumn = matchLine >= 0 ? (forward ? matchColumn + 1 : matchColumn) : 0;
+        CompletableFuture.supplyAsync(() -> store.find(query, fromLine, fromColumn, forward))
+            .thenAccept(match -> SwingUtilities.invokeLater(() -> {
+                if (match == null) {
+                    Toolkit.getDefaultToolkit().beep();
+                    return;
+                }
+                matchLine = match[0];
+                matchColumn = match[1];
+                anchorLine = match[0];
+                anchorColumn = match[1];
+                caretLine = match[0];
+                caretColumn = match[1] + query.length();
+                FontMetrics metrics = getFontMetrics(getFont());
+                scrollRectToVisible(new Rectangle(PADDING + matchColumn * metrics.charWidth('m'),
+                    PADDING + matchLine * lineHeight(), query.length() * metrics.charWidth('m'), lineHeight()));
+                repaint();
+            }));
+    }
+
+    private void installKeyBindings() {
+        InputMap inputs = getInputMap(JComponent.WHEN_FOCUSED);
+        ActionMap actions = getActionMap();
+
+        inputs.put(KeyStroke.getKeyStroke(KeyEvent.VK_C, InputEvent.CTRL_DOWN_MASK), "copy-output");
+        inputs.put(KeyStroke.getKeyStroke(KeyEvent.VK_A, InputEvent.CTRL_DOWN_MASK), "select-all-output");
+        inputs.put(KeyStroke.getKeyStroke(KeyEvent.VK_F, InputEvent.CTRL_DOWN_MASK), "find-output");
+        inputs.put(KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0), "find-next-output");
+        inputs.put(KeyStroke.getKeyStroke(KeyEvent.VK_F3, InputEvent.SHIFT_DOWN_MASK), "find-previous-output");
+
+        actions.put("copy-output", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                copySelection();
+            }
+        });
+        actions.put("select-all-output", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                selectAll();
+            }
+        });
+        actions.put("find-output", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                promptFind();
+            }
+        });
+        actions.put("find-next-output", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                find(lastQuery, true);
+            }
+        });
+        actions.put("find-previous-output", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                find(lastQuery, false);
+            }
+        });
+    }
+
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        if (lineCount == 0) {
+            return;
+        }
+
+        g.setFont(getFont());
+        FontMetrics metrics = g.getFontMetrics();
+        int lineHeight = lineHeight();
+        int charWidth = metrics.charWidth('m');
+        int first = Math.max(0, (clip.y - PADDING) / lineHeight);
+        int last = Math.min(lineCount - 1, (clip.y + clip.height - PADDING) / lineHeight);
+        int firstColumn = Math.max(0, (clip.x - PADDING) / charWidth);
+        int lastColumn = (clip.x + clip.width - PADDING) / charWidth + 1;
+        int[] selection = hasSelection() ? selectionRange() : null;
+
+        for (int line = first; line <= last; line++) {
+            String text = store.getLine(line);
+            int y = PADDING + line * lineHeight;
+
+            if (selection != null && line >= selection[0] && line <= selection[2]) {
+                int from = line == selection[0] ? Math.min(selection[1], text.length() + 1) : 0;
+                int to = line == selection[2] ? Math.min(selection[3], text.length()) : text.length() + 1;
+                g.setColor(SELECTION_COLOR);
+                g.fillRect(PADDING + from * charWidth, y, Math.max(0, to - from) * charWidth, lineHeight);
+            }
+            if (line == matchLine && !lastQuery.isEmpty()) {
+                g.setColor(MATCH_COLOR);
+                g.drawRect(PADDING + matchColumn * charWidth, y, lastQuery.length() * charWidth, lineHeight - 1);
+            }
+
+            if (firstColumn < text.length()) {
+                g.setColor(getForeground());
+                g.drawString(text.substring(firstColumn, Math.min(text.length(), lastColumn)),
+                    PADDING + firstColumn * charWidth, y + metrics.getAscent());
+            }
+        }
+    }
+
+    private int lineHeight() {
+        return getFontMetrics(getFont()).getHeight();
+    }
+
+    private Point positionAt(Point point) {
+        FontMetrics metrics = getFontMetrics(getFont());
+        int line = Math.max(0, Math.min(lineCount - 1, (point.y - PADDING) / lineHeight()));
+        int column = Math.max(0, Math.round((point.x - PADDING) / (float) metrics.charWidth('m')));
+        return new Point(column, line);
+    }
+
+    private int[] selectionRange() {
+        boolean anchorFirst = anchorLine < caretLine || (anchorLine == caretLine && anchorColumn <= caretColumn);
+        return anchorFirst ? new int[] {anchorLine, anchorColumn, caretLine, caretColumn}
+                           : new int[] {caretLine, caretColumn, anchorLine, anchorColumn};
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        FontMetrics metrics = getFontMetrics(getFont());
+        int width = PADDING * 2 + (maxLineLength + 1) * metrics.charWidth('m');
+        int height = PADDING * 2 + lineCount * metrics.getHeight();
+        return new Dimension(width, height);
+    }
+
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? lineHeight() : getFontMetrics(getFont()).charWidth('m') * 4;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height - lineHeight() : visibleRect.width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return getParent() instanceof JViewport && getParent().getWidth() > getPreferredSize().width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() instanceof JViewport && getParent().getHeight() > getPreferredSize().height;
+    }
+}
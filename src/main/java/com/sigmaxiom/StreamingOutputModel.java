@@ -0,0 +1,99 @@
+package com.sigmaxiom;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class StreamingOutputModel {
+
+    private static final int FRAME_MILLIS = 16;
+
+    private final OutputViewer viewer;
+    private final StringBuilder pending = new StringBuilder();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final Timer flushTimer;
+    private volatile boolean active = false;
+    private long appendedChars = 0;
+
+    public StreamingOutputModel(OutputViewer viewer) {
+        this.viewer = viewer;
+        this.flushTimer = new Timer(FRAME_MILLIS, e -> flush());
+        this.flushTimer.setRepeats(false);
+    }
+
+
+    public void begin() {
+        flushTimer.stop();
+        synchronized (pending) {
+            pending.setLength(0);
+            flushScheduled.set(false);
+        }
+        appendedChars = 0;
+        viewer.getStore().clear();
+        viewer.contentChanged();
+        active = true;
+    }
+
+    public void end() {
+        active = false;
+        flushTimer.stop();
+        synchronized (pending) {
+            pending.setLength(0);
+            flushScheduled.set(false);
+        }
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public int getLineCount() {
+        return viewer.getStore().getLineCount();
+    }
+
+    public long getAppendedChars() {
+        return appendedChars;
+    }
+
+
+    public void append(String text) {
+        if (!active || text == null || text.isEmpty()) {
+            return;
+        }
+        synchronized (pending) {
+            pending.append(text);
+        }
+        if (flushScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(() -> {
+                if (active) {
+                    flushTimer.restart();
+                }
+            });
+        }
+    }
+
+    public void appendLine(String line) {
+        append(line + "\n");
+    }
+
+
+    public void flush() {
+        String chunk;
+        synchronized (pending) {
+            chunk = pending.toString();
+            pending.setLength(0);
+            flushScheduled.set(false);
+        }
+        if (!active || chunk.isEmpty()) {
+            return;
+        }
+
+        boolean followTail = viewer.isScrolledToEnd();
+        viewer.getStore().append(chunk);
+        appendedChars += chunk.length();
+        viewer.contentChanged();
+        if (followTail) {
+            SwingUtilities.invokeLater(viewer::scrollToEnd);
+        }
+    }
+}
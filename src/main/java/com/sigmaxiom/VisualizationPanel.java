@@ -1,20 +1,42 @@
 package com.sigmaxiom;
 
 import java.awt.*;
-import java.awt.event.ComponentAdapter;
-import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
+import java.awt.image.VolatileImage;
+import java.util.ArrayList;
 import java.util.Base64;
-import javax.imageio.ImageIO;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
 
 public class VisualizationPanel extends JPanel {
-    private BufferedImage originalImage;
-    private JLabel visualizationLabel;
+    private static final int SIZE_BUCKET = 64;
+    private static final int MAX_FIGURES = 200;
+
+    private final List<FigureStore.Figure> figures = new ArrayList<>();
+    private int selectedIndex = -1;
+    private boolean followLatest = true;
+    private boolean pendingClear = false;
+    private JComponent visualizationCanvas;
     private JLabel placeholderLabel;
+    private JPanel thumbnailStrip;
+    private JScrollPane thumbnailScroll;
+    private long imageGeneration = 0;
+    private long clearGeneration = 0;
+    private long decodingFigure = -1;
+    private volatile int wantedBucket = -1;
+    private final Set<Integer> pendingVariants = new HashSet<>();
+    private final Set<Integer> variantBuckets = new HashSet<>();
+    private VolatileImage surface;
+    private Image surfaceSource;
+    private int surfaceWidth;
+    private int surfaceHeight;
 
     public VisualizationPanel() {
         
@@ -28,107 +50,405 @@ public class VisualizationPanel extends JPanel {
             Color.WHITE
         ));
         setBackground(new Color(13, 13, 35));
-
+        
         
         placeholderLabel = new JLabel("No visualization available.", SwingConstants.CENTER);
         placeholderLabel.setForeground(new Color(150, 150, 200));
         placeholderLabel.setBackground(new Color(16, 16, 45));
         placeholderLabel.setOpaque(true);
-
         
-        visualizationLabel = new JLabel();
-        visualizationLabel.setHorizontalAlignment(JLabel.CENTER);
-        visualizationLabel.setBackground(new Color(16, 16, 45));
-        visualizationLabel.setOpaque(true);
+        
+        visualizationCanvas = new JComponent() {
+            @Override
+            protected void paintComponent(Graphics g) {
+                paintVisualization(g);
+            }
+        };
+        visualizationCanvas.setBackground(new Color(16, 16, 45));
+        visualizationCanvas.setOpaque(true);
+        
+        
+        thumbnailStrip = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 4));
+        thumbnailStrip.setBackground(new Color(13, 13, 35));
+        thumbnailScroll = new JScrollPane(thumbnailStrip,
+            JScrollPane.VERTICAL_SCROLLBAR_NEVER, JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+        thumbnailScroll.setBorder(BorderFactory.createMatteBorder(1, 0, 0, 0, new Color(40, 40, 100)));
+        thumbnailScroll.setPreferredSize(new Dimension(100, FigureStore.THUMBNAIL_HEIGHT + 28));
+        thumbnailScroll.getHorizontalScrollBar().setUnitIncrement(24);
+        thumbnailScroll.setVisible(false);
+        add(thumbnailScroll, BorderLayout.SOUTH);
 
         
         add(placeholderLabel, BorderLayout.CENTER);
+    }
 
-        
-        addComponentListener(new ComponentAdapter() {
-            @Override
-            public void componentResized(ComponentEvent e) {
-                if (originalImage != null) {
-                    int maxWidth = getWidth() - 20;
-                    int maxHeight = getHeight() - 20;
-                    double scale = Math.min((double) maxWidth / originalImage.getWidth(),
-                                            (double) maxHeight / originalImage.getHeight());
-                    int newWidth = (int) (originalImage.getWidth() * scale);
-                    int newHeight = (int) (originalImage.getHeight() * scale);
-
-                    BufferedImage scaledImage = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_ARGB);
-                    Graphics2D g2 = scaledImage.createGraphics();
-                    g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-                    g2.drawImage(originalImage, 0, 0, newWidth, newHeight, null);
-                    g2.dispose();
-
-                    visualizationLabel.setIcon(new ImageIcon(scaledImage));
-                    revalidate();
-                    repaint();
+
+    public void displayVisualizationFromBase64(String base64Data) {
+        List<String> figureData = new ArrayList<>();
+        figureData.add(base64Data);
+        clearVisualization();
+        addFiguresFromBase64(figureData);
+    }
+
+    public void displayVisualizationFromBytes(byte[] imageBytes) {
+        clearVisualization();
+        addFigure(imageBytes, null, false);
+    }
+
+    public CompletableFuture<Void> addFiguresFromBase64(List<String> base64Figures) {
+        return addFiguresLater(() -> {
+            List<byte[]> decoded = new ArrayList<>();
+            for (String data : base64Figures) {
+                if (data.startsWith("data:image/")) {
+                    data = data.substring(data.indexOf(",") + 1);
+                }
+                try {
+                    decoded.add(Base64.getMimeDecoder().decode(data));
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Skipping malformed figure data: " + e.getMessage());
                 }
             }
+            return decoded;
         });
     }
 
-    
-    public void displayVisualization(BufferedImage image) {
-        if (image != null) {
-            originalImage = image;  
-
-            
-            int maxWidth = getWidth() - 20;
-            int maxHeight = getHeight() - 20;
-            double scale = Math.min((double) maxWidth / image.getWidth(), (double) maxHeight / image.getHeight());
-            int newWidth = (int) (image.getWidth() * scale);
-            int newHeight = (int) (image.getHeight() * scale);
-            BufferedImage scaledImage = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g2 = scaledImage.createGraphics();
-            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-            g2.drawImage(image, 0, 0, newWidth, newHeight, null);
-            g2.dispose();
-
-            visualizationLabel.setIcon(new ImageIcon(scaledImage));
-            remove(placeholderLabel);
-            if (!isAncestorOf(visualizationLabel)) {
-                add(visualizationLabel, BorderLayout.CENTER);
-            }
-            revalidate();
-            repaint();
+    public CompletableFuture<Void> addFiguresLater(Supplier<List<byte[]>> loader) {
+        final long generation = clearGeneration;
+        CompletableFuture<Void> added = new CompletableFuture<>();
+        FigureStore.supplyAsync(loader).thenAccept(decoded -> SwingUtilities.invokeLater(() -> {
+            if (generation == clearGeneration) {
+                for (byte[] data : decoded) {
+                    addFigure(data, null, false);
+                }
+            }
+            added.complete(null);
+        }));
+        return added;
+    }
+
+
+    public void addFigure(byte[] data, String displayId, boolean update) {
+        if (pendingClear) {
+            pendingClear = false;
+            removeAllFigures();
+        }
+
+        FigureStore.Figure figure = FigureStore.register(data, displayId);
+        int index = -1;
+        if (displayId != null) {
+            for (int i = 0; i < figures.size(); i++) {
+                if (displayId.equals(figures.get(i).getDisplayId())) {
+                    index = i;
+                    break;
+                }
+            }
+        }
+        if (index >= 0) {
+            FigureStore.release(figures.set(index, figure));
+        } else if (update) {
+            return;
         } else {
-            clearVisualization();
+            figures.add(figure);
+            index = figures.size() - 1;
+            while (figures.size() > MAX_FIGURES) {
+                FigureStore.release(figures.remove(0));
+                index--;
+                selectedIndex--;
+            }
+        }
+
+        FigureStore.thumbnail(figure).thenAccept(thumbnail -> SwingUtilities.invokeLater(thumbnailStrip::repaint));
+        if (followLatest || index == selectedIndex || selectedIndex < 0) {
+            selectFigure(index);
         }
+        refreshThumbnails();
+        showCanvas();
     }
 
-    public void displayVisualizationFromBase64(String base64Data) {
-    try {
-        
-        if (base64Data.startsWith("data:image/")) {
-            base64Data = base64Data.substring(base64Data.indexOf(",") + 1);
+    public void clearOutput(boolean wait) {
+        if (wait) {
+            pendingClear = true;
+        } else {
+            clearVisualization();
         }
-        
-        byte[] bytes = Base64.getDecoder().decode(base64Data);
-        ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
-        BufferedImage image = ImageIO.read(bis);
-        bis.close();
+    }
 
-        
-        displayVisualization(image);
-    } catch (IOException e) {
-        e.printStackTrace();
-        clearVisualization();
+    public int getFigureCount() {
+        return figures.size();
+    }
+
+    public List<FigureStore.Figure> getFigures() {
+        return new ArrayList<>(figures);
     }
-}
 
 
     public void clearVisualization() {
-        originalImage = null;
-        remove(visualizationLabel);
-        visualizationLabel.setIcon(null);
+        clearGeneration++;
+        pendingClear = false;
+        followLatest = true;
+        removeAllFigures();
+        refreshThumbnails();
+        remove(visualizationCanvas);
         if (!isAncestorOf(placeholderLabel)) {
             add(placeholderLabel, BorderLayout.CENTER);
         }
         revalidate();
         repaint();
     }
-}
 
+    private void removeAllFigures() {
+        for (FigureStore.Figure figure : figures) {
+            FigureStore.release(figure);
+        }
+        figures.clear();
+        selectFigure(-1);
+    }
+
+    private void selectFigure(int index) {
+        selectedIndex = index;
+        imageGeneration++;
+        decodingFigure = -1;
+        variantBuckets.clear();
+        pendingVariants.clear();
+        wantedBucket = -1;
+        surfaceSource = null;
+        if (surface != null) {
+            surface.flush();
+            surface = null;
+        }
+        visualizationCanvas.repaint();
+        thumbnailStrip.repaint();
+    }
+
+    private void showCanvas() {
+        remove(placeholderLabel);
+        if (!isAncestorOf(visualizationCanvas)) {
+            add(visualizationCanvas, BorderLayout.CENTER);
+        }
+        revalidate();
+        repaint();
+    }
+
+    private void refreshThumbnails() {
+        thumbnailStrip.removeAll();
+        for (FigureStore.Figure figure : figures) {
+            thumbnailStrip.add(new FigureThumbnail(figure));
+        }
+        thumbnailScroll.setVisible(figures.size() > 1);
+        thumbnailStrip.revalidate();
+        thumbnailStrip.repaint();
+        if (followLatest) {
+            SwingUtilities.invokeLater(() -> {
+                JScrollBar bar = thumbnailScroll.getHorizontalScrollBar();
+                bar.setValue(bar.getMaximum());
+            });
+        }
+    }
+
+
+    private void paintVisualization(Graphics g) {
+        g.setColor(visualizationCanvas.getBackground());
+        g.fillRect(0, 0, visualizationCanvas.getWidth(), visualizationCanvas.getHeight());
+        if (selectedIndex < 0 || selectedIndex >= figures.size()) {
+            return;
+        }
+        FigureStore.Figure figure = figures.get(selectedIndex);
+        BufferedImage image = FigureStore.getDecoded(figure);
+        if (image == null) {
+            requestDecode(figure);
+        }
+
+        
+        BufferedImage shape = image != null ? image : figure.getThumbnail();
+        if (shape == null) {
+            return;
+        }
+        int maxWidth = visualizationCanvas.getWidth() - 20;
+        int maxHeight = visualizationCanvas.getHeight() - 20;
+        if (maxWidth <= 0 || maxHeight <= 0) {
+            return;
+        }
+        double scale = Math.min((double) maxWidth / shape.getWidth(), (double) maxHeight / shape.getHeight());
+        int width = Math.max(1, (int) (shape.getWidth() * scale));
+        int height = Math.max(1, (int) (shape.getHeight() * scale));
+        int x = (visualizationCanvas.getWidth() - width) / 2;
+        int y = (visualizationCanvas.getHeight() - height) / 2;
+        if (image == null) {
+            drawScaled(g, shape, x, y, width, height, true);
+            return;
+        }
+
+
+        Image source = image;
+        boolean quality = true;
+        if (width < image.getWidth()) {
+            int bucket = Math.min(image.getWidth(), ((width + SIZE_BUCKET - 1) / SIZE_BUCKET) * SIZE_BUCKET);
+            BufferedImage variant = FigureStore.getScaled(figure, bucket);
+            if (variant != null) {
+                source = variant;
+            } else {
+                source = closestVariant(figure, image, width);
+                quality = false;
+                requestVariant(figure, image, bucket);
+            }
+        }
+
+        if (!drawThroughSurface(g, source, x, y, width, height, quality)) {
+            drawScaled(g, source, x, y, width, height, quality);
+        }
+    }
+
+    private void requestDecode(FigureStore.Figure figure) {
+        if (decodingFigure == figure.getId()) {
+            return;
+        }
+        decodingFigure = figure.getId();
+        final long generation = imageGeneration;
+        FigureStore.decode(figure).whenComplete((image, ex) -> SwingUtilities.invokeLater(() -> {
+            if (generation != imageGeneration) {
+                return;
+            }
+            decodingFigure = -1;
+            if (image != null) {
+                visualizationCanvas.repaint();
+                thumbnailStrip.repaint();
+            }
+        }));
+    }
+
+    private boolean drawThroughSurface(Graphics g, Image source, int x, int y, int width, int height, boolean quality) {
+        GraphicsConfiguration config = visualizationCanvas.getGraphicsConfiguration();
+        if (config == null) {
+            return false;
+        }
+        for (int attempt = 0; attempt < 2; attempt++) {
+            int capacityWidth = ((width + SIZE_BUCKET - 1) / SIZE_BUCKET) * SIZE_BUCKET;
+            int capacityHeight = ((height + SIZE_BUCKET - 1) / SIZE_BUCKET) * SIZE_BUCKET;
+            boolean stale = source != surfaceSource || width != surfaceWidth || height != surfaceHeight;
+            int status = surface != null ? surface.validate(config) : VolatileImage.IMAGE_INCOMPATIBLE;
+            if (status == VolatileImage.IMAGE_INCOMPATIBLE || surface.getWidth() < width || surface.getHeight() < height) {
+                if (surface != null) {
+                    surface.flush();
+                }
+                surface = config.createCompatibleVolatileImage(capacityWidth, capacityHeight, Transparency.TRANSLUCENT);
+                if (surface == null) {
+                    return false;
+                }
+                stale = true;
+            } else if (status == VolatileImage.IMAGE_RESTORED) {
+                stale = true;
+            }
+
+            if (stale) {
+                Graphics2D sg = surface.createGraphics();
+                sg.setComposite(AlphaComposite.Src);
+                sg.setColor(new Color(0, 0, 0, 0));
+                sg.fillRect(0, 0, surface.getWidth(), surface.getHeight());
+                sg.setComposite(AlphaComposite.SrcOver);
+                drawScaled(sg, source, 0, 0, width, height, quality);
+                sg.dispose();
+                surfaceSource = source;
+                surfaceWidth = width;
+                surfaceHeight = height;
+            }
+            if (!surface.contentsLost()) {
+                g.drawImage(surface, x, y, x + width, y + height, 0, 0, width, height, null);
+                return true;
+            }
+            surfaceSource = null;
+        }
+        return false;
+    }
+
+    private static void drawScaled(Graphics g, Image source, int x, int y, int width, int height, boolean quality) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, quality
+            ? RenderingHints.VALUE_INTERPOLATION_BILINEAR
+            : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        g2.drawImage(source, x, y, width, height, null);
+        g2.dispose();
+    }
+
+    private Image closestVariant(FigureStore.Figure figure, BufferedImage image, int width) {
+        Image best = image;
+        int bestWidth = image.getWidth();
+        for (Integer bucket : variantBuckets) {
+            BufferedImage variant = FigureStore.getScaled(figure, bucket);
+            if (variant != null && variant.getWidth() >= width && variant.getWidth() < bestWidth) {
+                best = variant;
+                bestWidth = variant.getWidth();
+            }
+        }
+        return best;
+    }
+
+
+    private void requestVariant(FigureStore.Figure figure, BufferedImage image, int bucket) {
+        wantedBucket = bucket;
+        if (!pendingVariants.add(bucket)) {
+            return;
+        }
+        final long generation = imageGeneration;
+        FigureStore.supplyAsync(() -> {
+            if (wantedBucket != bucket) {
+                return null;
+            }
+            int height = Math.max(1, (int) Math.round((double) image.getHeight() * bucket / image.getWidth()));
+            return FigureStore.scaleDown(image, bucket, height);
+        }).thenAccept(variant -> SwingUtilities.invokeLater(() -> {
+            pendingVariants.remove(bucket);
+            if (variant == null || generation != imageGeneration) {
+                return;
+            }
+            FigureStore.putScaled(figure, bucket, variant);
+            variantBuckets.add(bucket);
+            visualizationCanvas.repaint();
+        }));
+    }
+
+
+    private class FigureThumbnail extends JComponent {
+        private final FigureStore.Figure figure;
+
+        FigureThumbnail(FigureStore.Figure figure) {
+            this.figure = figure;
+            setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+            addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    int index = figures.indexOf(FigureThumbnail.this.figure);
+                    if (index >= 0) {
+                        followLatest = index == figures.size() - 1;
+                        selectFigure(index);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public Dimension getPreferredSize() {
+            BufferedImage thumbnail = figure.getThumbnail();
+            int width = thumbnail != null ? thumbnail.getWidth() : FigureStore.THUMBNAIL_HEIGHT * 4 / 3;
+            return new Dimension(width + 4, FigureStore.THUMBNAIL_HEIGHT + 4);
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            g.setColor(new Color(16, 16, 45));
+            g.fillRect(0, 0, getWidth(), getHeight());
+            BufferedImage thumbnail = figure.getThumbnail();
+            if (thumbnail != null) {
+                g.drawImage(thumbnail, 2, 2, null);
+                if (getWidth() != thumbnail.getWidth() + 4) {
+                    SwingUtilities.invokeLater(thumbnailStrip::revalidate);
+                }
+            }
+            boolean selected = selectedIndex >= 0 && selectedIndex < figures.size() && figures.get(selectedIndex) == figure;
+            g.setColor(selected ? new Color(0x4EC9B0) : new Color(40, 40, 100));
+            g.drawRect(0, 0, getWidth() - 1, getHeight() - 1);
+            if (selected) {
+                g.drawRect(1, 1, getWidth() - 3, getHeight() - 3);
+            }
+        }
+    }
+}